@@ -59,11 +59,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
@@ -72,6 +75,19 @@ public class FileDataStorageManager {
     public static final int ROOT_PARENT_ID = 0;
     private static String TAG = FileDataStorageManager.class.getSimpleName();
 
+    /**
+     * Columns needed to show a file as a row in a list, see {@link #getFolderContentForListRows(OCFile)}
+     */
+    private static final String[] LIST_ROW_PROJECTION = new String[]{
+            ProviderTableMeta._ID,
+            ProviderTableMeta.FILE_PARENT,
+            ProviderTableMeta.FILE_PATH,
+            ProviderTableMeta.FILE_CONTENT_TYPE,
+            ProviderTableMeta.FILE_STORAGE_PATH,
+            ProviderTableMeta.FILE_CONTENT_LENGTH,
+            ProviderTableMeta.FILE_MODIFIED
+    };
+
     private ContentResolver mContentResolver;
     private ContentProviderClient mContentProviderClient;
     private Account mAccount;
@@ -190,6 +206,349 @@ public class FileDataStorageManager {
     }
 
 
+    /**
+     * Gets the content of a folder with just the properties needed to show every file as a row in a list:
+     * id, parent id, remote path, name, MIME type, length, modification timestamp and local copy.
+     *
+     * Cuts the size of the cursor and the work to build the files for large folders. Files returned MUST NOT
+     * be used for anything else than showing them, nor saved; other properties keep default values.
+     *
+     * @param folder    Folder which content will be returned.
+     * @return          Sorted children of the folder, with only the properties needed for a list row.
+     */
+    public Vector<OCFile> getFolderContentForListRows(OCFile folder) {
+        Vector<OCFile> ret = new Vector<>();
+        if (folder == null || !folder.isFolder() || folder.getFileId() == -1) {
+            return ret;
+        }
+
+        // a complete listing is better than a new query, if available
+        Vector<OCFile> cached = FolderContentCache.getInstance().get(mAccount.name, folder.getFileId());
+        if (cached != null) {
+            return cached;
+        }
+
+        Uri req_uri = Uri.withAppendedPath(
+                ProviderTableMeta.CONTENT_URI_DIR,
+                String.valueOf(folder.getFileId()));
+        Cursor c = null;
+        if (getContentProviderClient() != null) {
+            try {
+                c = getContentProviderClient().query(req_uri, LIST_ROW_PROJECTION,
+                        ProviderTableMeta.FILE_PARENT + "=?",
+                        new String[]{String.valueOf(folder.getFileId())}, null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, e.getMessage());
+                return ret;
+            }
+        } else {
+            c = getContentResolver().query(req_uri, LIST_ROW_PROJECTION,
+                    ProviderTableMeta.FILE_PARENT + "=?",
+                    new String[]{String.valueOf(folder.getFileId())}, null);
+        }
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                FileCursorIndexes columns = new FileCursorIndexes(c);
+                ret.ensureCapacity(c.getCount());
+                do {
+                    OCFile child = new OCFile(c.getString(columns.mPath));
+                    child.setFileId(c.getLong(columns.mId));
+                    child.setParentId(c.getLong(columns.mParent));
+                    child.setMimetype(c.getString(columns.mContentType));
+                    if (!child.isFolder()) {
+                        child.setStoragePath(c.getString(columns.mStoragePath));
+                    }
+                    child.setFileLength(c.getLong(columns.mContentLength));
+                    child.setModificationTimestamp(c.getLong(columns.mModified));
+                    ret.add(child);
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+
+        Collections.sort(ret);
+
+        return ret;
+    }
+
+    /**
+     * Gets a window of the content of a folder, sorted in the database.
+     *
+     * Allows showing huge folders without loading all their content in memory. Folders are placed first,
+     * as in {@link FileStorageUtils#sortFolder(Vector, int, boolean)}, but names are compared ignoring case,
+     * without the natural ordering of numbers used there.
+     *
+     * When the last file of the previous window is known, the window starts right after it, so that files
+     * inserted or removed while the folder is synchronized don't shift it; otherwise it starts at offset.
+     *
+     * @param folder        Folder which content will be returned.
+     * @param nameFilter    Text that the names of the returned files must contain, ignoring case; or null.
+     * @param sortOrder     One of FileStorageUtils.SORT_NAME, FileStorageUtils.SORT_DATE or
+     *                      FileStorageUtils.SORT_SIZE.
+     * @param ascending     'true' to sort in ascending order, 'false' for descending.
+     * @param afterFile     Last file of the previous window, or null to start at offset.
+     * @param offset        Position of the first file to return; ignored if afterFile is not null.
+     * @param count         Maximum number of files to return.
+     * @return              Files in the given window of the sorted content of the folder.
+     */
+    public Vector<OCFile> getFolderContentPage(
+            OCFile folder,
+            String nameFilter,
+            int sortOrder,
+            boolean ascending,
+            OCFile afterFile,
+            int offset,
+            int count
+    ) {
+        Vector<OCFile> ret = new Vector<>();
+        String selection = null;
+        String[] selectionArgs = null;
+        String limit = offset + "," + count;
+        if (afterFile != null) {
+            String sortKey = getFolderContentSortKey(sortOrder);
+            String afterValue;
+            switch (sortOrder) {
+                case FileStorageUtils.SORT_DATE:
+                    afterValue = String.valueOf(afterFile.getModificationTimestamp());
+                    break;
+                case FileStorageUtils.SORT_SIZE:
+                    afterValue = String.valueOf(afterFile.getFileLength());
+                    break;
+                default:
+                    afterValue = afterFile.getFileName();
+                    break;
+            }
+            String operator = ascending ? " > ?" : " < ?";
+            String isFolder = "(" + ProviderTableMeta.FILE_CONTENT_TYPE + " = 'DIR')";
+            String afterIsFolder = afterFile.isFolder() ? "1" : "0";
+            selection = isFolder + " < " + afterIsFolder + " OR (" + isFolder + " = " + afterIsFolder +
+                    " AND (" + sortKey + operator + " OR (" + sortKey + " = ? AND " +
+                    ProviderTableMeta._ID + operator + ")))";
+            selectionArgs = new String[]{afterValue, afterValue, String.valueOf(afterFile.getFileId())};
+            limit = String.valueOf(count);
+        }
+        Cursor c = queryFolderContent(
+                folder,
+                null,
+                nameFilter,
+                selection,
+                selectionArgs,
+                getFolderContentSortOrder(sortOrder, ascending),
+                limit
+        );
+        if (c != null) {
+            if (c.moveToFirst()) {
+                FileCursorIndexes columns = new FileCursorIndexes(c);
+                ret.ensureCapacity(c.getCount());
+                do {
+                    ret.add(createFileInstance(c, columns));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+        return ret;
+    }
+
+    /**
+     * Counts the files in a folder, without loading them.
+     *
+     * @param folder        Folder which content will be counted.
+     * @param nameFilter    Text that the names of the counted files must contain, ignoring case; or null.
+     * @return              Number of files in the folder with names containing nameFilter, if any.
+     */
+    public int getFolderContentCount(OCFile folder, String nameFilter) {
+        int count = 0;
+        Cursor c = queryFolderContent(
+                folder,
+                new String[]{"count(*) AS count"},
+                nameFilter,
+                null,
+                null,
+                null,
+                null
+        );
+        if (c != null) {
+            if (c.moveToFirst()) {
+                count = c.getInt(0);
+            }
+            c.close();
+        }
+        return count;
+    }
+
+    /**
+     * Counts the folders and the non hidden files in a folder, without loading them.
+     *
+     * @param folder        Folder which content will be counted.
+     * @return              Number of folders and number of non hidden files in the folder.
+     */
+    public Pair<Integer, Integer> getFolderContentCountsByType(OCFile folder) {
+        int foldersCount = 0;
+        int filesCount = 0;
+        String isFolder = ProviderTableMeta.FILE_CONTENT_TYPE + " = 'DIR'";
+        Cursor c = queryFolderContent(
+                folder,
+                new String[]{
+                        "total(" + isFolder + ") AS folders",
+                        "total(NOT " + isFolder + " AND substr(" + ProviderTableMeta.FILE_NAME + ", 1, 1) != '.')" +
+                                " AS files"
+                },
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+        if (c != null) {
+            if (c.moveToFirst()) {
+                foldersCount = c.getInt(0);
+                filesCount = c.getInt(1);
+            }
+            c.close();
+        }
+        return new Pair<>(foldersCount, filesCount);
+    }
+
+    /**
+     * Gets a window of the content of a folder, sorted by remote id.
+     *
+     * Allows going over the content of huge folders in windows of bounded size while the folder is updated:
+     * every window starts after the last file of the previous one, not at a fixed position that would be
+     * shifted by insertions and removals. Files without remote id are sorted first, as if it was empty.
+     *
+     * @param folder            Folder which content will be returned.
+     * @param afterFile         Last file of the previous window, or null to get the first window.
+     * @param count             Maximum number of files to return.
+     * @return                  Files in the window, sorted by remote id and then by id.
+     */
+    public Vector<OCFile> getFolderContentSortedByRemoteId(OCFile folder, OCFile afterFile, int count) {
+        Vector<OCFile> ret = new Vector<>();
+        if (folder == null || !folder.isFolder() || folder.getFileId() == -1) {
+            return ret;
+        }
+        Uri uri = Uri.withAppendedPath(
+                ProviderTableMeta.CONTENT_URI_DIR,
+                String.valueOf(folder.getFileId())
+        ).buildUpon().appendQueryParameter(
+                ProviderTableMeta.QUERY_PARAMETER_LIMIT,
+                String.valueOf(count)
+        ).build();
+        String remoteIdKey = "ifnull(" + ProviderTableMeta.FILE_REMOTE_ID + ", '')";
+        String afterRemoteId = (afterFile == null || afterFile.getRemoteId() == null) ?
+                "" : afterFile.getRemoteId();
+        String afterId = (afterFile == null) ? "-1" : String.valueOf(afterFile.getFileId());
+        String where = ProviderTableMeta.FILE_PARENT + "=? AND (" +
+                remoteIdKey + " > ? OR (" + remoteIdKey + " = ? AND " + ProviderTableMeta._ID + " > ?))";
+        String[] whereArgs = new String[]{
+                String.valueOf(folder.getFileId()), afterRemoteId, afterRemoteId, afterId
+        };
+        String sortOrder = remoteIdKey + ", " + ProviderTableMeta._ID;
+
+        Cursor c = null;
+        if (getContentProviderClient() != null) {
+            try {
+                c = getContentProviderClient().query(uri, null, where, whereArgs, sortOrder);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, e.getMessage());
+                return ret;
+            }
+        } else {
+            c = getContentResolver().query(uri, null, where, whereArgs, sortOrder);
+        }
+        if (c != null) {
+            if (c.moveToFirst()) {
+                FileCursorIndexes columns = new FileCursorIndexes(c);
+                ret.ensureCapacity(c.getCount());
+                do {
+                    ret.add(createFileInstance(c, columns));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+        return ret;
+    }
+
+    private Cursor queryFolderContent(
+            OCFile folder,
+            String[] projection,
+            String nameFilter,
+            String selection,
+            String[] selectionArgs,
+            String sortOrder,
+            String limit
+    ) {
+        if (folder == null || !folder.isFolder() || folder.getFileId() == -1) {
+            return null;
+        }
+        Uri.Builder uriBuilder = Uri.withAppendedPath(
+                ProviderTableMeta.CONTENT_URI_DIR,
+                String.valueOf(folder.getFileId())
+        ).buildUpon();
+        if (limit != null) {
+            uriBuilder.appendQueryParameter(ProviderTableMeta.QUERY_PARAMETER_LIMIT, limit);
+        }
+        String where = ProviderTableMeta.FILE_PARENT + "=?";
+        String[] whereArgs;
+        if (nameFilter != null && nameFilter.length() > 0) {
+            where += " AND " + ProviderTableMeta.FILE_NAME_LOWERCASE + " LIKE ? ESCAPE '\\'";
+            whereArgs = new String[]{
+                    String.valueOf(folder.getFileId()),
+                    "%" + escapeForLike(nameFilter.toLowerCase()) + "%"
+            };
+        } else {
+            whereArgs = new String[]{String.valueOf(folder.getFileId())};
+        }
+        if (selection != null) {
+            where += " AND (" + selection + ")";
+            String[] allArgs = new String[whereArgs.length + selectionArgs.length];
+            System.arraycopy(whereArgs, 0, allArgs, 0, whereArgs.length);
+            System.arraycopy(selectionArgs, 0, allArgs, whereArgs.length, selectionArgs.length);
+            whereArgs = allArgs;
+        }
+
+        Cursor c = null;
+        if (getContentProviderClient() != null) {
+            try {
+                c = getContentProviderClient().query(uriBuilder.build(), projection, where, whereArgs, sortOrder);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, e.getMessage());
+            }
+        } else {
+            c = getContentResolver().query(uriBuilder.build(), projection, where, whereArgs, sortOrder);
+        }
+        return c;
+    }
+
+    /**
+     * Escapes the wildcards of LIKE in a text, using '\' as escape character.
+     *
+     * @param text      Text to escape.
+     * @return          Text matching itself in a LIKE pattern with ESCAPE '\'.
+     */
+    private static String escapeForLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String getFolderContentSortKey(int sortOrder) {
+        switch (sortOrder) {
+            case FileStorageUtils.SORT_DATE:
+                return ProviderTableMeta.FILE_MODIFIED;
+            case FileStorageUtils.SORT_SIZE:
+                return ProviderTableMeta.FILE_CONTENT_LENGTH;
+            default:
+                return ProviderTableMeta.FILE_NAME + " COLLATE NOCASE";
+        }
+    }
+
+    private static String getFolderContentSortOrder(int sortOrder, boolean ascending) {
+        String direction = ascending ? " ASC" : " DESC";
+        // folders first; id keeps the order stable between windows
+        return "(" + ProviderTableMeta.FILE_CONTENT_TYPE + " = 'DIR') DESC, " +
+                getFolderContentSortKey(sortOrder) + direction + ", " +
+                ProviderTableMeta._ID + direction;
+    }
+
     public Vector<OCFile> getFolderImages(OCFile folder/*, boolean onlyOnDevice*/) {
         Vector<OCFile> ret = new Vector<OCFile>();
         if (folder != null) {
@@ -219,6 +578,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, file.getFileLength());
         cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimetype());
         cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
+        cv.put(ProviderTableMeta.FILE_NAME_LOWERCASE, file.getFileName().toLowerCase());
         cv.put(ProviderTableMeta.FILE_PARENT, file.getParentId());
         cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
         if (!file.isFolder())
@@ -248,6 +608,9 @@ public class FileDataStorageManager {
             } else {
                 oldFile = getFileById(file.getFileId());
             }
+            if (oldFile.getParentId() != file.getParentId()) {
+                invalidateCachedListing(oldFile.getParentId());
+            }
 
             overriden = true;
             if (getContentResolver() != null) {
@@ -269,7 +632,10 @@ public class FileDataStorageManager {
         } else {
             // new file
 
-            setInitialAvailableOfflineStatus(file, cv);
+            cv.put(
+                    ProviderTableMeta.FILE_KEEP_IN_SYNC,
+                    getInitialAvailableOfflineStatusIn(file.getParentId()).getValue()
+            );
 
             Uri result_uri = null;
             if (getContentResolver() != null) {
@@ -291,6 +657,7 @@ public class FileDataStorageManager {
                 file.setFileId(new_id);
             }
         }
+        invalidateCachedListing(file.getParentId());
 
         return overriden;
     }
@@ -315,40 +682,46 @@ public class FileDataStorageManager {
         ArrayList<ContentProviderOperation> operations =
                 new ArrayList<ContentProviderOperation>(updatedFiles.size());
 
+        // resolve in a single query the files of the folder already stored in the database
+        Map<String, Long> storedIdsByPath = new HashMap<>();
+        Map<String, Long> storedIdsByRemoteId = new HashMap<>();
+        if (!updatedFiles.isEmpty()) {
+            loadStoredChildrenIds(folder, storedIdsByPath, storedIdsByRemoteId);
+        }
+        Set<Long> storedChildrenIds = new HashSet<>(storedIdsByPath.values());
+        Set<Long> claimedIds = new HashSet<>();     // ids already assigned to a file in this batch
+        boolean otherListingsChanged = false;
+
+        // all the new files in the folder inherit the same av-offline status
+        int initialAvailableOfflineStatus = getInitialAvailableOfflineStatusIn(folder.getFileId()).getValue();
+
         // prepare operations to insert or update files to save in the given folder
         for (OCFile file : updatedFiles) {
-            ContentValues cv = new ContentValues();
-            cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
-            cv.put(
-                    ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
-                    file.getModificationTimestampAtLastSyncForData()
-            );
-            cv.put(ProviderTableMeta.FILE_CREATION, file.getCreationTimestamp());
-            cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, file.getFileLength());
-            cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimetype());
-            cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
-            cv.put(ProviderTableMeta.FILE_PARENT, folder.getFileId());
-            cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
-            if (!file.isFolder()) {
-                cv.put(ProviderTableMeta.FILE_STORAGE_PATH, file.getStoragePath());
-            }
-            cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, mAccount.name);
-            cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, file.getLastSyncDateForProperties());
-            cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, file.getLastSyncDateForData());
-            cv.put(ProviderTableMeta.FILE_ETAG, file.getEtag());
-            cv.put(ProviderTableMeta.FILE_TREE_ETAG, file.getTreeEtag());
-            cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, file.isSharedViaLink() ? 1 : 0);
-            cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, file.isSharedWithSharee() ? 1 : 0);
-            cv.put(ProviderTableMeta.FILE_PERMISSIONS, file.getPermissions());
-            cv.put(ProviderTableMeta.FILE_REMOTE_ID, file.getRemoteId());
-            cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, file.needsUpdateThumbnail());
-            cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, file.isDownloading());
-            cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, file.getEtagInConflict());
-            cv.put(ProviderTableMeta.FILE_PRIVATE_LINK, file.getPrivateLink());
-
-            boolean existsByPath = fileExists(file.getRemotePath());
-            if (existsByPath || fileExists(file.getFileId())) {
+            ContentValues cv = createContentValuesForChild(file, folder);
+
+            // id set when merged with the stored file goes first, then remote id, then path; for instance,
+            // if 'a' was renamed to 'b' and a new 'a' was created, 'b' keeps the row and 'a' gets a new one
+            Long storedId = null;
+            long mergedId = file.getFileId();
+            if (mergedId != -1 && !claimedIds.contains(mergedId)) {
+                if (storedChildrenIds.contains(mergedId)) {
+                    storedId = mergedId;
+                } else if (fileExists(mergedId)) {
+                    // stored out of the folder; for instance, moved from other folder
+                    storedId = mergedId;
+                    otherListingsChanged = true;
+                }
+            }
+            if (storedId == null && file.getRemoteId() != null) {
+                storedId = getUnclaimedId(storedIdsByRemoteId.get(file.getRemoteId()), claimedIds);
+            }
+            if (storedId == null) {
+                storedId = getUnclaimedId(storedIdsByPath.get(file.getRemotePath()), claimedIds);
+            }
+            if (storedId != null) {
                 // updating an existing file
+                claimedIds.add(storedId);
+                file.setFileId(storedId);
                 operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
                         withValues(cv).
                         withSelection(ProviderTableMeta._ID + "=?",
@@ -357,13 +730,167 @@ public class FileDataStorageManager {
 
             } else {
                 // adding a new file
-                setInitialAvailableOfflineStatus(file, cv);
+                file.setFileId(-1);
+                cv.put(ProviderTableMeta.FILE_KEEP_IN_SYNC, initialAvailableOfflineStatus);
                 operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI).
                         withValues(cv).build());
             }
         }
 
         // prepare operations to remove files in the given folder
+        if (addRemovalOperations(folder, filesToRemove, operations)) {
+            otherListingsChanged = true;    // listings of descendants
+        }
+
+        // update metadata of folder
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
+        cv.put(
+                ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+                folder.getModificationTimestampAtLastSyncForData()
+        );
+        cv.put(ProviderTableMeta.FILE_CREATION, folder.getCreationTimestamp());
+        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, folder.getFileLength());
+        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, folder.getMimetype());
+        cv.put(ProviderTableMeta.FILE_NAME, folder.getFileName());
+        cv.put(ProviderTableMeta.FILE_NAME_LOWERCASE, folder.getFileName().toLowerCase());
+        cv.put(ProviderTableMeta.FILE_PARENT, folder.getParentId());
+        cv.put(ProviderTableMeta.FILE_PATH, folder.getRemotePath());
+        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, mAccount.name);
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, folder.getLastSyncDateForProperties());
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, folder.getLastSyncDateForData());
+        cv.put(ProviderTableMeta.FILE_ETAG, folder.getEtag());
+        cv.put(ProviderTableMeta.FILE_TREE_ETAG, folder.getTreeEtag());
+        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, folder.isSharedViaLink() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, folder.isSharedWithSharee() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_PERMISSIONS, folder.getPermissions());
+        cv.put(ProviderTableMeta.FILE_REMOTE_ID, folder.getRemoteId());
+        cv.put(ProviderTableMeta.FILE_PRIVATE_LINK, folder.getPrivateLink());
+
+        operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
+                withValues(cv).
+                withSelection(ProviderTableMeta._ID + "=?",
+                        new String[]{String.valueOf(folder.getFileId())})
+                .build());
+
+        // apply operations in batch
+        ContentProviderResult[] results = applyBatch(operations);
+
+        if (otherListingsChanged) {
+            invalidateCachedListings();
+        } else {
+            invalidateCachedListing(folder.getFileId());
+            invalidateCachedListing(folder.getParentId());
+        }
+
+        // update new id in file objects for insertions
+        setInsertedIds(updatedFiles, results);
+    }
+
+    /**
+     * Inserts or updates a part of the list of files contained in a given folder, without updating the
+     * folder itself.
+     *
+     * Allows saving the content of huge folders in several batches of bounded size. Unlike
+     * {@link #saveFolder(OCFile, Collection, Collection)}, files to update must come with the id of the
+     * file they update; files without id are inserted as new files.
+     * <p/>
+     * CALLER IS THE RESPONSIBLE FOR GRANTING RIGHT UPDATE OF INFORMATION, NOT THIS METHOD.
+     *
+     * @param folder            Folder containing the files.
+     * @param updatedFiles      Files to insert or update in the folder.
+     * @param filesToRemove     Files to remove from the folder.
+     */
+    public void saveFolderContentBatch(
+            OCFile folder, Collection<OCFile> updatedFiles, Collection<OCFile> filesToRemove
+    ) {
+        Log_OC.d(TAG,  "Saving batch of " + updatedFiles.size() + " children of folder " +
+                folder.getRemotePath() + " and " + filesToRemove.size() + " files to remove");
+
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<>(updatedFiles.size() + filesToRemove.size());
+
+        int initialAvailableOfflineStatus = getInitialAvailableOfflineStatusIn(folder.getFileId()).getValue();
+
+        for (OCFile file : updatedFiles) {
+            ContentValues cv = createContentValuesForChild(file, folder);
+            if (file.getFileId() != -1) {
+                operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
+                        withValues(cv).
+                        withSelection(ProviderTableMeta._ID + "=?",
+                                new String[]{String.valueOf(file.getFileId())})
+                        .build());
+            } else {
+                cv.put(ProviderTableMeta.FILE_KEEP_IN_SYNC, initialAvailableOfflineStatus);
+                operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI).
+                        withValues(cv).build());
+            }
+        }
+        boolean otherListingsChanged = addRemovalOperations(folder, filesToRemove, operations);
+
+        ContentProviderResult[] results = applyBatch(operations);
+
+        if (otherListingsChanged) {
+            invalidateCachedListings();
+        } else {
+            invalidateCachedListing(folder.getFileId());
+        }
+
+        setInsertedIds(updatedFiles, results);
+    }
+
+    /**
+     * Creates the values to save a file as a child of a folder.
+     *
+     * @param file      File to save.
+     * @param folder    Folder containing the file.
+     * @return          Values to save in the database, except the av-offline status.
+     */
+    private ContentValues createContentValuesForChild(OCFile file, OCFile folder) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
+        cv.put(
+                ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+                file.getModificationTimestampAtLastSyncForData()
+        );
+        cv.put(ProviderTableMeta.FILE_CREATION, file.getCreationTimestamp());
+        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, file.getFileLength());
+        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimetype());
+        cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
+        cv.put(ProviderTableMeta.FILE_NAME_LOWERCASE, file.getFileName().toLowerCase());
+        cv.put(ProviderTableMeta.FILE_PARENT, folder.getFileId());
+        cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
+        if (!file.isFolder()) {
+            cv.put(ProviderTableMeta.FILE_STORAGE_PATH, file.getStoragePath());
+        }
+        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, mAccount.name);
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, file.getLastSyncDateForProperties());
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, file.getLastSyncDateForData());
+        cv.put(ProviderTableMeta.FILE_ETAG, file.getEtag());
+        cv.put(ProviderTableMeta.FILE_TREE_ETAG, file.getTreeEtag());
+        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, file.isSharedViaLink() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, file.isSharedWithSharee() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_PERMISSIONS, file.getPermissions());
+        cv.put(ProviderTableMeta.FILE_REMOTE_ID, file.getRemoteId());
+        cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, file.needsUpdateThumbnail());
+        cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, file.isDownloading());
+        cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, file.getEtagInConflict());
+        cv.put(ProviderTableMeta.FILE_PRIVATE_LINK, file.getPrivateLink());
+        return cv;
+    }
+
+    /**
+     * Adds the operations to remove files of a folder from the database, and removes their local copies.
+     *
+     * @param folder            Folder containing the files to remove; files out of it are ignored.
+     * @param filesToRemove     Files to remove.
+     * @param operations        List where the operations are added.
+     * @return                  'true' if any folder is removed, so listings of descendants changed too.
+     */
+    private boolean addRemovalOperations(
+            OCFile folder, Collection<OCFile> filesToRemove, ArrayList<ContentProviderOperation> operations
+    ) {
+        boolean foldersRemoved = false;
         String where = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?" + " AND " +
                 ProviderTableMeta.FILE_PATH + "=?";
         String [] whereArgs = null;
@@ -376,6 +903,7 @@ public class FileDataStorageManager {
                                     ProviderTableMeta.CONTENT_URI_DIR, file.getFileId()
                             )
                     ).withSelection(where, whereArgs).build());
+                    foldersRemoved = true;
 
                     File localFolder =
                             new File(FileStorageUtils.getDefaultSavePathFor(mAccount.name, file));
@@ -397,38 +925,10 @@ public class FileDataStorageManager {
                 }
             }
         }
+        return foldersRemoved;
+    }
 
-        // update metadata of folder
-        ContentValues cv = new ContentValues();
-        cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
-        cv.put(
-                ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
-                folder.getModificationTimestampAtLastSyncForData()
-        );
-        cv.put(ProviderTableMeta.FILE_CREATION, folder.getCreationTimestamp());
-        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, folder.getFileLength());
-        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, folder.getMimetype());
-        cv.put(ProviderTableMeta.FILE_NAME, folder.getFileName());
-        cv.put(ProviderTableMeta.FILE_PARENT, folder.getParentId());
-        cv.put(ProviderTableMeta.FILE_PATH, folder.getRemotePath());
-        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, mAccount.name);
-        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, folder.getLastSyncDateForProperties());
-        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, folder.getLastSyncDateForData());
-        cv.put(ProviderTableMeta.FILE_ETAG, folder.getEtag());
-        cv.put(ProviderTableMeta.FILE_TREE_ETAG, folder.getTreeEtag());
-        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, folder.isSharedViaLink() ? 1 : 0);
-        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, folder.isSharedWithSharee() ? 1 : 0);
-        cv.put(ProviderTableMeta.FILE_PERMISSIONS, folder.getPermissions());
-        cv.put(ProviderTableMeta.FILE_REMOTE_ID, folder.getRemoteId());
-        cv.put(ProviderTableMeta.FILE_PRIVATE_LINK, folder.getPrivateLink());
-
-        operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
-                withValues(cv).
-                withSelection(ProviderTableMeta._ID + "=?",
-                        new String[]{String.valueOf(folder.getFileId())})
-                .build());
-
-        // apply operations in batch
+    private ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) {
         ContentProviderResult[] results = null;
         Log_OC.d(TAG, "Sending " + operations.size() + " operations to FileContentProvider");
         try {
@@ -445,11 +945,19 @@ public class FileDataStorageManager {
         } catch (RemoteException e) {
             Log_OC.e(TAG, "Exception in batch of operations  " + e.getMessage());
         }
+        return results;
+    }
 
-        // update new id in file objects for insertions
+    /**
+     * Sets the ids of the files inserted by a batch of operations.
+     *
+     * @param files     Files saved by the first operations in the batch, in the same order.
+     * @param results   Results of the batch of operations, or null if it failed.
+     */
+    private void setInsertedIds(Collection<OCFile> files, ContentProviderResult[] results) {
         if (results != null) {
             long newId;
-            Iterator<OCFile> filesIt = updatedFiles.iterator();
+            Iterator<OCFile> filesIt = files.iterator();
             OCFile file = null;
             for (int i = 0; i < results.length; i++) {
                 if (filesIt.hasNext()) {
@@ -463,33 +971,87 @@ public class FileDataStorageManager {
                     if (file != null) {
                         file.setFileId(newId);
                     }
-                }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the received maps with the ids of the files currently stored in the database as
+     * children of the given folder, keyed by remote path and by remote id.
+     *
+     * Grants that existing rows are resolved with a single query, instead of one query per child.
+     *
+     * @param folder                Folder which children will be resolved.
+     * @param storedIdsByPath       Map to fill with the ids of the children, by remote path.
+     * @param storedIdsByRemoteId   Map to fill with the ids of the children, by remote id.
+     */
+    private void loadStoredChildrenIds(
+            OCFile folder, Map<String, Long> storedIdsByPath, Map<String, Long> storedIdsByRemoteId
+    ) {
+        if (folder.getFileId() == -1) {
+            return;
+        }
+        String[] projection = new String[]{
+                ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH, ProviderTableMeta.FILE_REMOTE_ID
+        };
+        String where = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PARENT + "=?";
+        String[] whereArgs = new String[]{mAccount.name, String.valueOf(folder.getFileId())};
+        Cursor c = null;
+        if (getContentResolver() != null) {
+            c = getContentResolver().query(ProviderTableMeta.CONTENT_URI, projection, where, whereArgs, null);
+        } else {
+            try {
+                c = getContentProviderClient().query(
+                        ProviderTableMeta.CONTENT_URI, projection, where, whereArgs, null
+                );
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not get children of " + folder.getRemotePath() + ": " + e.getMessage());
+            }
+        }
+        if (c != null) {
+            if (c.moveToFirst()) {
+                int idIndex = c.getColumnIndex(ProviderTableMeta._ID);
+                int pathIndex = c.getColumnIndex(ProviderTableMeta.FILE_PATH);
+                int remoteIdIndex = c.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+                do {
+                    long id = c.getLong(idIndex);
+                    storedIdsByPath.put(c.getString(pathIndex), id);
+                    String remoteId = c.getString(remoteIdIndex);
+                    if (remoteId != null) {
+                        storedIdsByRemoteId.put(remoteId, id);
+                    }
+                } while (c.moveToNext());
             }
+            c.close();
         }
+    }
 
+    /**
+     * @param id            Id of a stored file, or null.
+     * @param claimedIds    Ids already assigned to other files.
+     * @return              The given id if not null nor claimed; null otherwise.
+     */
+    private static Long getUnclaimedId(Long id, Set<Long> claimedIds) {
+        return (id != null && !claimedIds.contains(id)) ? id : null;
     }
 
     /**
-     * Adds the appropriate initial value for ProviderTableMeta.FILE_KEEP_IN_SYNC to
-     * passed {@link ContentValues} instance.
+     * Returns the initial value for ProviderTableMeta.FILE_KEEP_IN_SYNC of a new file in a folder.
      *
-     * @param file      {@link OCFile} which av-offline property will be set.
-     * @param cv        {@link ContentValues} instance where the property is added.
+     * Descendants of an available offline folder are stored as AVAILABLE_OFFLINE_PARENT, so the status
+     * of the folder is enough to know if any ancestor is available offline; no need to go further up.
+     *
+     * @param folderId      Id of the folder where the new file is saved.
+     * @return              Av-offline status to set in new files saved in the folder.
      */
-    private void setInitialAvailableOfflineStatus(OCFile file, ContentValues cv) {
-        // set appropriate av-off folder depending on ancestor
-        boolean inFolderAvailableOffline = isAnyAncestorAvailableOfflineFolder(file);
-        if (inFolderAvailableOffline) {
-            cv.put(
-                ProviderTableMeta.FILE_KEEP_IN_SYNC,
-                OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT.getValue()
-            );
-        } else {
-            cv.put(
-                ProviderTableMeta.FILE_KEEP_IN_SYNC,
-                OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE.getValue()
-            );
+    private OCFile.AvailableOfflineStatus getInitialAvailableOfflineStatusIn(long folderId) {
+        OCFile folder = getFileById(folderId);
+        if (folder != null && folder.isFolder() &&  // file is null for the parent of the root folder
+                folder.getAvailableOfflineStatus() != OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE) {
+            return OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT;
         }
+        return OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE;
     }
 
     /**
@@ -562,13 +1124,22 @@ public class FileDataStorageManager {
                     new String[]{String.valueOf(file.getFileId())}
                 );
 
-                // If file is a folder, all children files that were available offline must be unset
+                // Update descendants
                 if (file.isFolder() && updatedCount > 0) {
                     ContentValues descendantsCv = new ContentValues();
-                    descendantsCv.put(
-                        ProviderTableMeta.FILE_KEEP_IN_SYNC,
-                        OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE.getValue()
-                    );
+                    if (newStatus == OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE) {
+                        // all descendant files MUST be av-off due to inheritance, not due to previous value
+                        descendantsCv.put(
+                            ProviderTableMeta.FILE_KEEP_IN_SYNC,
+                            OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT.getValue()
+                        );
+                    } else {
+                        // all descendant files MUST be not-available offline
+                        descendantsCv.put(
+                            ProviderTableMeta.FILE_KEEP_IN_SYNC,
+                            OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE.getValue()
+                        );
+                    }
                     Pair<String, String[]> selectDescendants = selectionForAllDescendantsOf(file);
                     updatedCount += getContentProviderClient().update(
                         ProviderTableMeta.CONTENT_URI,
@@ -584,6 +1155,11 @@ public class FileDataStorageManager {
                 return false;
             }
         }
+        if (file.isFolder()) {
+            invalidateCachedListings();     // listings of descendants
+        } else {
+            invalidateCachedListing(file.getParentId());
+        }
 
         return (updatedCount > 0);
     }
@@ -611,6 +1187,7 @@ public class FileDataStorageManager {
                     } else {
                         deleted = getContentResolver().delete(file_uri, where, whereArgs);
                     }
+                    invalidateCachedListing(file.getParentId());
                     success &= (deleted > 0);
                 }
                 String localPath = file.getStoragePath();
@@ -662,6 +1239,7 @@ public class FileDataStorageManager {
         } else {
             deleted = getContentResolver().delete(folder_uri, where, whereArgs);
         }
+        invalidateCachedListings();     // listings of descendants
         return deleted > 0;
     }
 
@@ -734,18 +1312,15 @@ public class FileDataStorageManager {
             }
 
             /// 1. get all the descendants of the moved element in a single QUERY
+            Pair<String, String[]> selectMoved = selectionForFileAndAllDescendantsOf(file);
             Cursor c = null;
             if (getContentProviderClient() != null) {
                 try {
                     c = getContentProviderClient().query(
                             ProviderTableMeta.CONTENT_URI,
                             null,
-                            ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
-                                    ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                            new String[]{
-                                    mAccount.name,
-                                    file.getRemotePath() + "%"
-                            },
+                            selectMoved.first,
+                            selectMoved.second,
                             ProviderTableMeta.FILE_PATH + " ASC "
                     );
                 } catch (RemoteException e) {
@@ -756,12 +1331,8 @@ public class FileDataStorageManager {
                 c = getContentResolver().query(
                         ProviderTableMeta.CONTENT_URI,
                         null,
-                        ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
-                                ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                        new String[]{
-                                mAccount.name,
-                                file.getRemotePath() + "%"
-                        },
+                        selectMoved.first,
+                        selectMoved.second,
                         ProviderTableMeta.FILE_PATH + " ASC "
                 );
             }
@@ -777,13 +1348,16 @@ public class FileDataStorageManager {
                 if (c.moveToFirst()) {
                     int lengthOfOldPath = file.getRemotePath().length();
                     int lengthOfOldStoragePath = defaultSavePath.length() + lengthOfOldPath;
+                    FileCursorIndexes columns = new FileCursorIndexes(c);
                     do {
                         ContentValues cv = new ContentValues(); // keep construction in the loop
-                        OCFile child = createFileInstance(c);
-                        cv.put(
-                            ProviderTableMeta.FILE_PATH,
-                            targetPath + child.getRemotePath().substring(lengthOfOldPath)
-                        );
+                        OCFile child = createFileInstance(c, columns);
+                        String childTargetPath = targetPath + child.getRemotePath().substring(lengthOfOldPath);
+                        cv.put(ProviderTableMeta.FILE_PATH, childTargetPath);
+                        // names are used to sort and filter listings in the database
+                        String childTargetName = new File(childTargetPath).getName();
+                        cv.put(ProviderTableMeta.FILE_NAME, childTargetName);
+                        cv.put(ProviderTableMeta.FILE_NAME_LOWERCASE, childTargetName.toLowerCase());
                         if (child.getStoragePath() != null &&
                             child.getStoragePath().startsWith(defaultSavePath)) {
                             // update link to downloaded content - but local move is not done here!
@@ -847,6 +1421,7 @@ public class FileDataStorageManager {
                     Log_OC.e(TAG, "Fail to update " + file.getFileId() + " and descendants in database",
                         e);
                 }
+                invalidateCachedListings();     // listings of source, target and descendants
             }
 
             /// 4. move in local file system
@@ -933,7 +1508,14 @@ public class FileDataStorageManager {
 
     private Vector<OCFile> getFolderContent(long parentId/*, boolean onlyOnDevice*/) {
 
-        Vector<OCFile> ret = new Vector<OCFile>();
+        FolderContentCache cache = FolderContentCache.getInstance();
+        Vector<OCFile> ret = cache.get(mAccount.name, parentId);
+        if (ret != null) {
+            return ret;
+        }
+        long cacheGeneration = cache.getGeneration();
+
+        ret = new Vector<OCFile>();
 
         Uri req_uri = Uri.withAppendedPath(
                 ProviderTableMeta.CONTENT_URI_DIR,
@@ -957,8 +1539,9 @@ public class FileDataStorageManager {
 
         if (c!= null) {
             if (c.moveToFirst()) {
+                FileCursorIndexes columns = new FileCursorIndexes(c);
                 do {
-                    OCFile child = createFileInstance(c);
+                    OCFile child = createFileInstance(c, columns);
                     // TODO Enable when "On Device" is recovered ?
                     // if (child.isFolder() || !onlyOnDevice || onlyOnDevice && child.isDown()){
                     ret.add(child);
@@ -970,17 +1553,273 @@ public class FileDataStorageManager {
 
         Collections.sort(ret);
 
+        if (c != null) {
+            cache.put(mAccount.name, parentId, ret, cacheGeneration);
+        }
+
         return ret;
     }
 
     /**
-     * Checks if it is favorite or it is inside a favorite folder
+     * Sets the tree ETag of a folder to the ETag it had when merged, to register that all its subtree is
+     * synchronized with the version of the folder in the server that had that ETag.
      *
-     * @param file              {@link OCFile} which ancestors will be searched.
-     * @return                  true/false
+     * Nothing is saved if the ETag of the folder changed since then, for instance in a concurrent refresh;
+     * its subtree is not known to be synchronized with the new version.
+     *
+     * @param remotePath    Remote path of the folder.
+     * @param mergedEtag    ETag of the folder when it was merged.
+     */
+    public void saveTreeEtagAsSynchronized(String remotePath, String mergedEtag) {
+        OCFile folder = getFileByPath(remotePath);
+        if (folder == null || !folder.isFolder() || mergedEtag == null) {
+            return;
+        }
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_TREE_ETAG, mergedEtag);
+        int updated = updateFiles(
+                cv,
+                ProviderTableMeta._ID + "=? AND " + ProviderTableMeta.FILE_ETAG + "=?",
+                new String[]{String.valueOf(folder.getFileId()), mergedEtag},
+                "tree ETag"
+        );
+        if (updated > 0) {
+            invalidateCachedListing(folder.getParentId());
+        }
+    }
+
+    /**
+     * Checks if any descendant of a folder was set as available offline by the user.
+     *
+     * @param folder    Folder to check.
+     * @return          'true' if any file or folder in the subtree of the folder, not including the folder,
+     *                  is AVAILABLE_OFFLINE.
+     */
+    public boolean hasAvailableOfflineDescendants(OCFile folder) {
+        Pair<String, String[]> selectDescendants = selectionForAllDescendantsOf(folder);
+        String where = selectDescendants.first + " AND " + ProviderTableMeta.FILE_KEEP_IN_SYNC + "=?";
+        String[] whereArgs = Arrays.copyOf(selectDescendants.second, selectDescendants.second.length + 1);
+        whereArgs[whereArgs.length - 1] =
+                String.valueOf(OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE.getValue());
+        Uri uri = ProviderTableMeta.CONTENT_URI.buildUpon().appendQueryParameter(
+                ProviderTableMeta.QUERY_PARAMETER_LIMIT,
+                "1"
+        ).build();
+        String[] projection = new String[]{ProviderTableMeta._ID};
+
+        Cursor c = null;
+        if (getContentResolver() != null) {
+            c = getContentResolver().query(uri, projection, where, whereArgs, null);
+        } else {
+            try {
+                c = getContentProviderClient().query(uri, projection, where, whereArgs, null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not check av-offline descendants of " + folder.getRemotePath() + ": " +
+                        e.getMessage());
+                return true;    // safer than skipping them
+            }
+        }
+        boolean found = true;
+        if (c != null) {
+            found = c.moveToFirst();
+            c.close();
+        }
+        return found;
+    }
+
+    /**
+     * Saves the folders pending in a full synchronization of the current account, replacing the ones
+     * saved before, so that the synchronization can be resumed if interrupted.
+     *
+     * @param syncTime      Time stamp of the synchronization in progress.
+     * @param folders       Folders pending of synchronization, in the order to synchronize them, with
+     *                      flags set to 'true' if they changed in the server.
+     */
+    public void saveSyncFrontier(long syncTime, Collection<Pair<OCFile, Boolean>> folders) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(folders.size() + 1);
+        operations.add(ContentProviderOperation.newDelete(ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER)
+                .withSelection(ProviderTableMeta.SYNC_FRONTIER__ACCOUNT_NAME + "=?", new String[]{mAccount.name})
+                .build()
+        );
+        for (Pair<OCFile, Boolean> folder : folders) {
+            operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER)
+                    .withValue(ProviderTableMeta.SYNC_FRONTIER__ACCOUNT_NAME, mAccount.name)
+                    .withValue(ProviderTableMeta.SYNC_FRONTIER__PATH, folder.first.getRemotePath())
+                    .withValue(ProviderTableMeta.SYNC_FRONTIER__SERVER_CHANGED, folder.second ? 1 : 0)
+                    .withValue(ProviderTableMeta.SYNC_FRONTIER__SYNC_TIME, syncTime)
+                    .build()
+            );
+        }
+        applyBatch(operations);
+    }
+
+    /**
+     * Gets the time stamp of the interrupted full synchronization of the current account, if any.
+     *
+     * @return              Time stamp saved with {@link #saveSyncFrontier(long, Collection)}, or 0 if there
+     *                      are no folders pending of synchronization.
+     */
+    public long getSyncFrontierTime() {
+        Uri uri = ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER.buildUpon().appendQueryParameter(
+                ProviderTableMeta.QUERY_PARAMETER_LIMIT,
+                "1"
+        ).build();
+        Cursor c = querySyncFrontier(uri, new String[]{ProviderTableMeta.SYNC_FRONTIER__SYNC_TIME});
+        long syncTime = 0;
+        if (c != null) {
+            if (c.moveToFirst()) {
+                syncTime = c.getLong(c.getColumnIndex(ProviderTableMeta.SYNC_FRONTIER__SYNC_TIME));
+            }
+            c.close();
+        }
+        return syncTime;
+    }
+
+    /**
+     * Gets the folders pending in the interrupted full synchronization of the current account.
+     *
+     * Folders not in the local database anymore are left out.
+     *
+     * @return              Folders saved with {@link #saveSyncFrontier(long, Collection)}, in the same order,
+     *                      with flags set to 'true' if they changed in the server.
+     */
+    public List<Pair<OCFile, Boolean>> getSyncFrontier() {
+        Cursor c = querySyncFrontier(
+                ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER,
+                new String[]{ProviderTableMeta.SYNC_FRONTIER__PATH, ProviderTableMeta.SYNC_FRONTIER__SERVER_CHANGED}
+        );
+        List<Pair<String, Boolean>> paths = new ArrayList<>();
+        if (c != null) {
+            if (c.moveToFirst()) {
+                int pathIndex = c.getColumnIndex(ProviderTableMeta.SYNC_FRONTIER__PATH);
+                int serverChangedIndex = c.getColumnIndex(ProviderTableMeta.SYNC_FRONTIER__SERVER_CHANGED);
+                do {
+                    paths.add(new Pair<>(c.getString(pathIndex), c.getInt(serverChangedIndex) == 1));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+
+        List<Pair<OCFile, Boolean>> folders = new ArrayList<>(paths.size());
+        for (Pair<String, Boolean> path : paths) {
+            OCFile folder = getFileByPath(path.first);
+            if (folder != null) {
+                folders.add(new Pair<>(folder, path.second));
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Removes the folders pending in the interrupted full synchronization of the current account, if any.
+     */
+    public void deleteSyncFrontier() {
+        String where = ProviderTableMeta.SYNC_FRONTIER__ACCOUNT_NAME + "=?";
+        String[] whereArgs = new String[]{mAccount.name};
+        if (getContentResolver() != null) {
+            getContentResolver().delete(ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER, where, whereArgs);
+        } else {
+            try {
+                getContentProviderClient().delete(ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER, where, whereArgs);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Failed deleting sync frontier of " + mAccount.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Cursor querySyncFrontier(Uri uri, String[] projection) {
+        String where = ProviderTableMeta.SYNC_FRONTIER__ACCOUNT_NAME + "=?";
+        String[] whereArgs = new String[]{mAccount.name};
+        String sortOrder = ProviderTableMeta._ID;
+        if (getContentResolver() != null) {
+            return getContentResolver().query(uri, projection, where, whereArgs, sortOrder);
+        }
+        try {
+            return getContentProviderClient().query(uri, projection, where, whereArgs, sortOrder);
+        } catch (RemoteException e) {
+            Log_OC.e(TAG, "Failed reading sync frontier of " + mAccount.name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Removes from the cache of folder listings the listing of a folder of the current account.
+     *
+     * Must be called after the write that changes the listing is done in the database.
+     *
+     * @param folderId      Id of the folder which listing changed.
+     */
+    private void invalidateCachedListing(long folderId) {
+        FolderContentCache.getInstance().invalidate(mAccount.name, folderId);
+    }
+
+    /**
+     * Removes from the cache of folder listings all the listings of the current account.
+     *
+     * Used by writes that change files in several folders at once.
      */
-    private boolean isAnyAncestorAvailableOfflineFolder(OCFile file) {
-        return (getAvailableOfflineAncestorOf(file) != null);
+    private void invalidateCachedListings() {
+        FolderContentCache.getInstance().invalidateAll(mAccount.name);
+    }
+
+    /**
+     * Binds the files in a folder without a local copy registered in the database to the 'lost' local
+     * files with the same name in the default location for them, if any.
+     *
+     * Local copies get lost for the database after reinstalling the app or clearing its data. Binding
+     * them during synchronizations, in a single listing of the local folder, lets building {@link OCFile}
+     * instances from the database work without accessing the file system.
+     *
+     * @param folder    Folder which children will be bound to their lost local copies.
+     * @return          Number of files bound to a local copy.
+     */
+    public int bindLostLocalFilesIn(OCFile folder) {
+        if (folder == null || !folder.isFolder() || folder.getFileId() == -1) {
+            return 0;
+        }
+        File localFolder = new File(FileStorageUtils.getDefaultSavePathFor(mAccount.name, folder));
+        String[] localNames = localFolder.list();
+        if (localNames == null || localNames.length == 0) {
+            return 0;
+        }
+        Set<String> localNamesSet = new HashSet<>(localNames.length);
+        Collections.addAll(localNamesSet, localNames);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (OCFile child : getFolderContent(folder.getFileId())) {
+            if (!child.isFolder() && child.getStoragePath() == null &&
+                    localNamesSet.contains(child.getFileName())) {
+                File localFile = new File(localFolder, child.getFileName());
+                if (localFile.isFile()) {
+                    ContentValues cv = new ContentValues();
+                    cv.put(ProviderTableMeta.FILE_STORAGE_PATH, localFile.getAbsolutePath());
+                    cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, localFile.lastModified());
+                    operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
+                            withValues(cv).
+                            withSelection(ProviderTableMeta._ID + "=?",
+                                    new String[]{String.valueOf(child.getFileId())})
+                            .build());
+                }
+            }
+        }
+
+        if (operations.size() > 0) {
+            Log_OC.d(TAG, "Binding " + operations.size() + " lost local files in " + folder.getRemotePath());
+            try {
+                if (getContentResolver() != null) {
+                    getContentResolver().applyBatch(MainApp.getAuthority(), operations);
+
+                } else {
+                    getContentProviderClient().applyBatch(operations);
+                }
+
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Fail binding lost local files in " + folder.getRemotePath(), e);
+                return 0;
+            }
+            invalidateCachedListing(folder.getFileId());
+        }
+        return operations.size();
     }
 
     /**
@@ -1073,65 +1912,103 @@ public class FileDataStorageManager {
 
 
     private OCFile createFileInstance(Cursor c) {
+        return createFileInstance(c, (c != null) ? new FileCursorIndexes(c) : null);
+    }
+
+    private OCFile createFileInstance(Cursor c, FileCursorIndexes columns) {
         OCFile file = null;
         if (c != null) {
-            file = new OCFile(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.FILE_PATH)));
-            file.setFileId(c.getLong(c.getColumnIndex(ProviderTableMeta._ID)));
-            file.setParentId(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_PARENT)));
-            file.setMimetype(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
+            file = new OCFile(c.getString(columns.mPath));
+            file.setFileId(c.getLong(columns.mId));
+            file.setParentId(c.getLong(columns.mParent));
+            file.setMimetype(c.getString(columns.mContentType));
             if (!file.isFolder()) {
-                file.setStoragePath(c.getString(c
-                        .getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
-                if (file.getStoragePath() == null) {
-                    // try to find existing file and bind it with current account; 
-                    // with the current update of SynchronizeFolderOperation, this won't be 
-                    // necessary anymore after a full synchronization of the account
-                    File f = new File(FileStorageUtils.getDefaultSavePathFor(mAccount.name, file));
-                    if (f.exists()) {
-                        file.setStoragePath(f.getAbsolutePath());
-                        file.setLastSyncDateForData(f.lastModified());
-                    }
-                }
-            }
-            file.setFileLength(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
-            file.setCreationTimestamp(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_CREATION)));
-            file.setModificationTimestamp(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
-            file.setModificationTimestampAtLastSyncForData(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)));
-            file.setLastSyncDateForProperties(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE)));
-            file.setLastSyncDateForData(c.getLong(c.
-                    getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)));
+                // local copies not known by the database are bound in synchronizations,
+                // see #bindLostLocalFilesIn(OCFile)
+                file.setStoragePath(c.getString(columns.mStoragePath));
+            }
+            file.setFileLength(c.getLong(columns.mContentLength));
+            file.setCreationTimestamp(c.getLong(columns.mCreation));
+            file.setModificationTimestamp(c.getLong(columns.mModified));
+            file.setModificationTimestampAtLastSyncForData(c.getLong(columns.mModifiedAtLastSyncForData));
+            file.setLastSyncDateForProperties(c.getLong(columns.mLastSyncDate));
+            file.setLastSyncDateForData(c.getLong(columns.mLastSyncDateForData));
             file.setAvailableOfflineStatus(
                 OCFile.AvailableOfflineStatus.fromValue(
-                    c.getInt(c.getColumnIndex(ProviderTableMeta.FILE_KEEP_IN_SYNC))
+                    c.getInt(columns.mKeepInSync)
                 )
             );
-            file.setEtag(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
-            file.setTreeEtag(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_TREE_ETAG)));
-            file.setSharedViaLink(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK)) == 1);
-            file.setSharedWithSharee(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE)) == 1);
-            file.setPermissions(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS)));
-            file.setRemoteId(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID)));
-            file.setNeedsUpdateThumbnail(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL)) == 1);
-            file.setDownloading(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING)) == 1);
-            file.setEtagInConflict(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT)));
-            file.setPrivateLink(c.getString(c.getColumnIndex(ProviderTableMeta.FILE_PRIVATE_LINK)));
+            file.setEtag(c.getString(columns.mEtag));
+            file.setTreeEtag(c.getString(columns.mTreeEtag));
+            file.setSharedViaLink(c.getInt(columns.mSharedViaLink) == 1);
+            file.setSharedWithSharee(c.getInt(columns.mSharedWithSharee) == 1);
+            file.setPermissions(c.getString(columns.mPermissions));
+            file.setRemoteId(c.getString(columns.mRemoteId));
+            file.setNeedsUpdateThumbnail(c.getInt(columns.mUpdateThumbnail) == 1);
+            file.setDownloading(c.getInt(columns.mIsDownloading) == 1);
+            file.setEtagInConflict(c.getString(columns.mEtagInConflict));
+            file.setPrivateLink(c.getString(columns.mPrivateLink));
 
         }
         return file;
     }
 
+    /**
+     * Indexes of the columns of the files table in a {@link Cursor}.
+     *
+     * Resolved once per cursor and reused for every row, so that mapping a big cursor doesn't
+     * look up every column by name in every row. Columns not in the projection of the cursor get -1.
+     */
+    private static class FileCursorIndexes {
+        final int mId;
+        final int mPath;
+        final int mParent;
+        final int mContentType;
+        final int mStoragePath;
+        final int mContentLength;
+        final int mCreation;
+        final int mModified;
+        final int mModifiedAtLastSyncForData;
+        final int mLastSyncDate;
+        final int mLastSyncDateForData;
+        final int mKeepInSync;
+        final int mEtag;
+        final int mTreeEtag;
+        final int mSharedViaLink;
+        final int mSharedWithSharee;
+        final int mPermissions;
+        final int mRemoteId;
+        final int mUpdateThumbnail;
+        final int mIsDownloading;
+        final int mEtagInConflict;
+        final int mPrivateLink;
+
+        FileCursorIndexes(Cursor c) {
+            mId = c.getColumnIndex(ProviderTableMeta._ID);
+            mPath = c.getColumnIndex(ProviderTableMeta.FILE_PATH);
+            mParent = c.getColumnIndex(ProviderTableMeta.FILE_PARENT);
+            mContentType = c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE);
+            mStoragePath = c.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH);
+            mContentLength = c.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH);
+            mCreation = c.getColumnIndex(ProviderTableMeta.FILE_CREATION);
+            mModified = c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED);
+            mModifiedAtLastSyncForData = c.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA);
+            mLastSyncDate = c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE);
+            mLastSyncDateForData = c.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA);
+            mKeepInSync = c.getColumnIndex(ProviderTableMeta.FILE_KEEP_IN_SYNC);
+            mEtag = c.getColumnIndex(ProviderTableMeta.FILE_ETAG);
+            mTreeEtag = c.getColumnIndex(ProviderTableMeta.FILE_TREE_ETAG);
+            mSharedViaLink = c.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK);
+            mSharedWithSharee = c.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE);
+            mPermissions = c.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS);
+            mRemoteId = c.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+            mUpdateThumbnail = c.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL);
+            mIsDownloading = c.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING);
+            mEtagInConflict = c.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT);
+            mPrivateLink = c.getColumnIndex(ProviderTableMeta.FILE_PRIVATE_LINK);
+        }
+    }
+
     // Methods for Shares
     public boolean saveShare(OCShare share) {
         boolean overriden = false;
@@ -1193,6 +2070,7 @@ public class FileDataStorageManager {
                         .get(1));
                 share.setId(new_id);
             }
+            invalidateCachedListings();     // share flags of the shared file were set in the insertion
         }
 
         return overriden;
@@ -1312,45 +2190,70 @@ public class FileDataStorageManager {
     }
 
     private OCShare createShareInstance(Cursor c) {
+        return createShareInstance(c, (c != null) ? new ShareCursorIndexes(c) : null);
+    }
+
+    private OCShare createShareInstance(Cursor c, ShareCursorIndexes columns) {
         OCShare share = null;
         if (c != null) {
-            share = new OCShare(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_PATH)));
-            share.setId(c.getLong(c.getColumnIndex(ProviderTableMeta._ID)));
-            share.setFileSource(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_ITEM_SOURCE)));
-            share.setShareType(ShareType.fromValue(c.getInt(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_TYPE))));
-            share.setShareWith(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_WITH)));
-            share.setPermissions(c.getInt(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_PERMISSIONS)));
-            share.setSharedDate(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_SHARED_DATE)));
-            share.setExpirationDate(c.getLong(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_EXPIRATION_DATE)));
-            share.setToken(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_TOKEN)));
-            share.setSharedWithDisplayName(c.getString(c
-                    .getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_WITH_DISPLAY_NAME)));
-            share.setIsFolder(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.OCSHARES_IS_DIRECTORY)) == 1);
-            share.setUserId(c.getLong(
-                c.getColumnIndex(ProviderTableMeta.OCSHARES_USER_ID))
-            );
-            share.setIdRemoteShared(c.getLong(
-                    c.getColumnIndex(ProviderTableMeta.OCSHARES_ID_REMOTE_SHARED))
-            );
-            share.setName(c.getString(
-                c.getColumnIndex(ProviderTableMeta.OCSHARES_NAME)
-            ));
-            share.setShareLink(c.getString(
-                c.getColumnIndex(ProviderTableMeta.OCSHARES_URL)
-            ));
+            share = new OCShare(c.getString(columns.mPath));
+            share.setId(c.getLong(columns.mId));
+            share.setFileSource(c.getLong(columns.mItemSource));
+            share.setShareType(ShareType.fromValue(c.getInt(columns.mShareType)));
+            share.setShareWith(c.getString(columns.mShareWith));
+            share.setPermissions(c.getInt(columns.mPermissions));
+            share.setSharedDate(c.getLong(columns.mSharedDate));
+            share.setExpirationDate(c.getLong(columns.mExpirationDate));
+            share.setToken(c.getString(columns.mToken));
+            share.setSharedWithDisplayName(c.getString(columns.mShareWithDisplayName));
+            share.setIsFolder(c.getInt(columns.mIsDirectory) == 1);
+            share.setUserId(c.getLong(columns.mUserId));
+            share.setIdRemoteShared(c.getLong(columns.mIdRemoteShared));
+            share.setName(c.getString(columns.mName));
+            share.setShareLink(c.getString(columns.mUrl));
         }
         return share;
     }
 
+    /**
+     * Indexes of the columns of the shares table in a {@link Cursor}, resolved once per cursor.
+     */
+    private static class ShareCursorIndexes {
+        final int mId;
+        final int mPath;
+        final int mItemSource;
+        final int mShareType;
+        final int mShareWith;
+        final int mPermissions;
+        final int mSharedDate;
+        final int mExpirationDate;
+        final int mToken;
+        final int mShareWithDisplayName;
+        final int mIsDirectory;
+        final int mUserId;
+        final int mIdRemoteShared;
+        final int mName;
+        final int mUrl;
+
+        ShareCursorIndexes(Cursor c) {
+            mId = c.getColumnIndex(ProviderTableMeta._ID);
+            mPath = c.getColumnIndex(ProviderTableMeta.OCSHARES_PATH);
+            mItemSource = c.getColumnIndex(ProviderTableMeta.OCSHARES_ITEM_SOURCE);
+            mShareType = c.getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_TYPE);
+            mShareWith = c.getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_WITH);
+            mPermissions = c.getColumnIndex(ProviderTableMeta.OCSHARES_PERMISSIONS);
+            mSharedDate = c.getColumnIndex(ProviderTableMeta.OCSHARES_SHARED_DATE);
+            mExpirationDate = c.getColumnIndex(ProviderTableMeta.OCSHARES_EXPIRATION_DATE);
+            mToken = c.getColumnIndex(ProviderTableMeta.OCSHARES_TOKEN);
+            mShareWithDisplayName = c.getColumnIndex(ProviderTableMeta.OCSHARES_SHARE_WITH_DISPLAY_NAME);
+            mIsDirectory = c.getColumnIndex(ProviderTableMeta.OCSHARES_IS_DIRECTORY);
+            mUserId = c.getColumnIndex(ProviderTableMeta.OCSHARES_USER_ID);
+            mIdRemoteShared = c.getColumnIndex(ProviderTableMeta.OCSHARES_ID_REMOTE_SHARED);
+            mName = c.getColumnIndex(ProviderTableMeta.OCSHARES_NAME);
+            mUrl = c.getColumnIndex(ProviderTableMeta.OCSHARES_URL);
+        }
+    }
+
     private void resetShareFlagsInAllFiles() {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, false);
@@ -1370,6 +2273,7 @@ public class FileDataStorageManager {
                 Log_OC.e(TAG, "Exception in resetShareFlagsInAllFiles" + e.getMessage());
             }
         }
+        invalidateCachedListings();
     }
 
     private void resetShareFlagsInFolder(OCFile folder) {
@@ -1392,6 +2296,7 @@ public class FileDataStorageManager {
                 Log_OC.e(TAG, "Exception in resetShareFlagsInFolder " + e.getMessage());
             }
         }
+        invalidateCachedListing(folder.getFileId());
     }
 
     private void resetShareFlagInAFile(String filePath){
@@ -1414,6 +2319,7 @@ public class FileDataStorageManager {
                 Log_OC.e(TAG, "Exception in resetShareFlagsInFolder " + e.getMessage());
             }
         }
+        invalidateCachedListings();
     }
 
     private void cleanShares() {
@@ -1482,6 +2388,7 @@ public class FileDataStorageManager {
             } catch (RemoteException e) {
                 Log_OC.e(TAG, "Exception in batch of operations  " + e.getMessage());
             }
+            invalidateCachedListings();     // share flags of the shared files were set in the insertions
         }
 
     }
@@ -1539,6 +2446,8 @@ public class FileDataStorageManager {
             } catch (RemoteException e) {
 
             }
+            // share flags of the shared files were set in the insertions
+            invalidateCachedListing(folder.getFileId());
         }
 
     }
@@ -1659,8 +2568,9 @@ public class FileDataStorageManager {
         OCShare privateShare;
         if (c != null) {
             if (c.moveToFirst()) {
+                ShareCursorIndexes columns = new ShareCursorIndexes(c);
                 do {
-                    privateShare = createShareInstance(c);
+                    privateShare = createShareInstance(c, columns);
                     privateShares.add(privateShare);
                 } while (c.moveToNext());
             }
@@ -1698,8 +2608,9 @@ public class FileDataStorageManager {
         OCShare publicShare;
         if (c != null) {
             if (c.moveToFirst()) {
+                ShareCursorIndexes columns = new ShareCursorIndexes(c);
                 do {
-                    publicShare = createShareInstance(c);
+                    publicShare = createShareInstance(c, columns);
                     publicShares.add(publicShare);
                     // }
                 } while (c.moveToNext());
@@ -1770,100 +2681,72 @@ public class FileDataStorageManager {
 
     }
 
+    /**
+     * Saves the conflict state of a file, and propagates it to its ancestor folders.
+     *
+     * Propagation is incremental: nothing is propagated if the conflict state of the file did not change,
+     * and when a conflict is solved only the closest ancestors with no other conflict below them are
+     * updated; the walk stops in the first ancestor still containing another conflict, since all the
+     * ancestors above it contain it too.
+     *
+     * @param file              File which conflict state will be saved.
+     * @param etagInConflict    ETag of the server version in conflict with the local one, or null
+     *                          if the file is not in conflict.
+     */
     public void saveConflict(OCFile file, String etagInConflict) {
         if (!file.isDown()) {
             etagInConflict = null;
         }
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, etagInConflict);
-        int updated = 0;
-        if (getContentResolver() != null) {
-            updated = getContentResolver().update(
-                    ProviderTableMeta.CONTENT_URI_FILE,
-                    cv,
-                    ProviderTableMeta._ID + "=?",
-                    new String[] { String.valueOf(file.getFileId())}
-            );
-        } else {
-            try {
-                updated = getContentProviderClient().update(
-                        ProviderTableMeta.CONTENT_URI_FILE,
-                        cv,
-                        ProviderTableMeta._ID + "=?",
-                        new String[]{String.valueOf(file.getFileId())}
-                );
-            } catch (RemoteException e) {
-                Log_OC.e(TAG, "Failed saving conflict in database " + e.getMessage());
-            }
+        String where = ProviderTableMeta._ID + "=?";
+        if (etagInConflict == null) {
+            // nothing to solve if the file was not in conflict
+            where += " AND " + ProviderTableMeta.FILE_ETAG_IN_CONFLICT + " IS NOT NULL";
         }
+        int updated = updateFiles(cv, where, new String[]{String.valueOf(file.getFileId())}, "conflict");
 
         Log_OC.d(TAG, "Number of files updated with CONFLICT: " + updated);
 
         if (updated > 0) {
+            List<String> ancestorPaths = getAncestorPaths(file.getRemotePath());
             if (etagInConflict != null) {
-                /// set conflict in all ancestor folders
-
-                long parentId = file.getParentId();
-                Set<String> ancestorIds = new HashSet<String>();
-                while (parentId != FileDataStorageManager.ROOT_PARENT_ID) {
-                    ancestorIds.add(Long.toString(parentId));
-                    parentId = getFileById(parentId).getParentId();
-                }
-
-                if (ancestorIds.size() > 0) {
-                    StringBuffer whereBuffer = new StringBuffer();
-                    whereBuffer.append(ProviderTableMeta._ID).append(" IN (");
-                    for (int i = 0; i < ancestorIds.size() - 1; i++) {
-                        whereBuffer.append("?,");
-                    }
-                    whereBuffer.append("?");
-                    whereBuffer.append(")");
-
-                    if (getContentResolver() != null) {
-                        updated = getContentResolver().update(
-                                ProviderTableMeta.CONTENT_URI_FILE,
-                                cv,
-                                whereBuffer.toString(),
-                                ancestorIds.toArray(new String[]{})
-                        );
-                    } else {
-                        try {
-                            updated = getContentProviderClient().update(
-                                    ProviderTableMeta.CONTENT_URI_FILE,
-                                    cv,
-                                    whereBuffer.toString(),
-                                    ancestorIds.toArray(new String[]{})
-                            );
-                        } catch (RemoteException e) {
-                            Log_OC.e(TAG, "Failed saving conflict in database " + e.getMessage());
-                        }
+                /// set conflict in all ancestor folders not in conflict yet, in a single update
+                if (ancestorPaths.size() > 0) {
+                    StringBuilder whereBuilder = new StringBuilder();
+                    whereBuilder.append(ProviderTableMeta.FILE_ETAG_IN_CONFLICT).append(" IS NULL AND ");
+                    whereBuilder.append(ProviderTableMeta.FILE_ACCOUNT_OWNER).append("=? AND ");
+                    whereBuilder.append(ProviderTableMeta.FILE_PATH).append(" IN (");
+                    for (int i = 0; i < ancestorPaths.size() - 1; i++) {
+                        whereBuilder.append("?,");
                     }
+                    whereBuilder.append("?)");
+                    List<String> whereArgs = new ArrayList<>(ancestorPaths.size() + 1);
+                    whereArgs.add(mAccount.name);
+                    whereArgs.addAll(ancestorPaths);
+                    updated = updateFiles(
+                            cv, whereBuilder.toString(), whereArgs.toArray(new String[]{}), "conflict"
+                    );
+                    Log_OC.d(TAG, "Number of ancestors updated with CONFLICT: " + updated);
                 } // else file is ROOT folder, no parent to set in conflict
 
             } else {
-                /// update conflict in ancestor folders
-                // (not directly unset; maybe there are more conflicts below them)
-                String parentPath = file.getRemotePath();
-                if (parentPath.endsWith(OCFile.PATH_SEPARATOR)) {
-                    parentPath = parentPath.substring(0, parentPath.length() - 1);
-                }
-                parentPath = parentPath.substring(0, parentPath.lastIndexOf(OCFile.PATH_SEPARATOR) + 1);
-
-                Log_OC.d(TAG, "checking parents to remove conflict; STARTING with " + parentPath);
-                while (parentPath.length() > 0) {
-
+                /// update conflict in ancestor folders, from the closest one, while no more conflicts
+                // are found below them
+                for (String parentPath : ancestorPaths) {
+                    Log_OC.d(TAG, "checking parents to remove conflict; NEXT " + parentPath);
+                    Pair<String, String[]> selectDescendants = selectionForAllDescendantsOf(parentPath);
                     String whereForDescencentsInConflict =
                             ProviderTableMeta.FILE_ETAG_IN_CONFLICT + " IS NOT NULL AND " +
                                     ProviderTableMeta.FILE_CONTENT_TYPE + " != 'DIR' AND " +
-                                    ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ? AND " +
-                                    ProviderTableMeta.FILE_PATH + " LIKE ?";
+                                    selectDescendants.first;
                     Cursor descendantsInConflict = null;
                     if (getContentResolver() != null) {
                         descendantsInConflict = getContentResolver().query(
                                 ProviderTableMeta.CONTENT_URI_FILE,
                                 new String[]{ProviderTableMeta._ID},
                                 whereForDescencentsInConflict,
-                                new String[]{mAccount.name, parentPath + "%"},
+                                selectDescendants.second,
                                 null
                         );
                     } else {
@@ -1872,54 +2755,81 @@ public class FileDataStorageManager {
                                     ProviderTableMeta.CONTENT_URI_FILE,
                                     new String[]{ProviderTableMeta._ID},
                                     whereForDescencentsInConflict,
-                                    new String[]{mAccount.name, parentPath + "%"},
+                                    selectDescendants.second,
                                     null
                             );
                         } catch (RemoteException e) {
                             Log_OC.e(TAG, "Failed querying for descendants in conflict " + e.getMessage());
                         }
                     }
-                    if (descendantsInConflict == null || descendantsInConflict.getCount() == 0) {
-                        Log_OC.d(TAG, "NO MORE conflicts in " + parentPath);
-                        if (getContentResolver() != null) {
-                            updated = getContentResolver().update(
-                                    ProviderTableMeta.CONTENT_URI_FILE,
-                                    cv,
-                                    ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
-                                            ProviderTableMeta.FILE_PATH + "=?",
-                                    new String[]{mAccount.name, parentPath}
-                            );
-                        } else {
-                            try {
-                                updated = getContentProviderClient().update(
-                                        ProviderTableMeta.CONTENT_URI_FILE,
-                                        cv,
-                                        ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
-                                                ProviderTableMeta.FILE_PATH + "=?"
-                                        , new String[]{mAccount.name, parentPath}
-                                );
-                            } catch (RemoteException e) {
-                                Log_OC.e(TAG, "Failed saving conflict in database " + e.getMessage());
-                            }
-                        }
-
-                    } else {
-                        Log_OC.d(TAG, "STILL " + descendantsInConflict.getCount() + " in " + parentPath);
-                    }
-
+                    boolean moreConflicts = (descendantsInConflict != null && descendantsInConflict.getCount() > 0);
                     if (descendantsInConflict != null) {
                         descendantsInConflict.close();
                     }
-
-                    parentPath = parentPath.substring(0, parentPath.length() - 1);  // trim last /
-                    parentPath = parentPath.substring(0, parentPath.lastIndexOf(OCFile.PATH_SEPARATOR) + 1);
-                    Log_OC.d(TAG, "checking parents to remove conflict; NEXT " + parentPath);
+                    if (moreConflicts) {
+                        Log_OC.d(TAG, "STILL conflicts in " + parentPath + "; ancestors are kept in conflict");
+                        break;
+                    }
+                    Log_OC.d(TAG, "NO MORE conflicts in " + parentPath);
+                    updateFiles(
+                            cv,
+                            ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH + "=?",
+                            new String[]{mAccount.name, parentPath},
+                            "conflict"
+                    );
                 }
             }
+            invalidateCachedListings();     // listings of file and ancestors
         }
 
     }
 
+    /**
+     * Gets the remote paths of all the ancestor folders of a file, from the closest one to the root folder.
+     *
+     * @param remotePath    Remote path of the file.
+     * @return              Remote paths of the ancestors of the file; empty for the root folder.
+     */
+    private List<String> getAncestorPaths(String remotePath) {
+        List<String> ancestorPaths = new ArrayList<>();
+        String parentPath = remotePath;
+        if (parentPath.endsWith(OCFile.PATH_SEPARATOR)) {
+            parentPath = parentPath.substring(0, parentPath.length() - 1);
+        }
+        parentPath = parentPath.substring(0, parentPath.lastIndexOf(OCFile.PATH_SEPARATOR) + 1);
+        while (parentPath.length() > 0) {
+            ancestorPaths.add(parentPath);
+            parentPath = parentPath.substring(0, parentPath.length() - 1);  // trim last /
+            parentPath = parentPath.substring(0, parentPath.lastIndexOf(OCFile.PATH_SEPARATOR) + 1);
+        }
+        return ancestorPaths;
+    }
+
+    /**
+     * Updates the files matching a selection.
+     *
+     * @param cv            Values to update.
+     * @param where         Selection of the files to update.
+     * @param whereArgs     Arguments of the selection.
+     * @param description   Description of the values updated, for the log in case of failure.
+     * @return              Number of files updated.
+     */
+    private int updateFiles(ContentValues cv, String where, String[] whereArgs, String description) {
+        int updated = 0;
+        if (getContentResolver() != null) {
+            updated = getContentResolver().update(ProviderTableMeta.CONTENT_URI_FILE, cv, where, whereArgs);
+        } else {
+            try {
+                updated = getContentProviderClient().update(
+                        ProviderTableMeta.CONTENT_URI_FILE, cv, where, whereArgs
+                );
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Failed saving " + description + " in database " + e.getMessage());
+            }
+        }
+        return updated;
+    }
+
     public OCCapability saveCapabilities(OCCapability capability){
 
         // Prepare capabilities data
@@ -2123,17 +3033,55 @@ public class FileDataStorageManager {
     }
 
     private Pair<String, String[]> selectionForAllDescendantsOf(OCFile file) {
+        return selectionForAllDescendantsOf(file.getRemotePath());
+    }
+
+    /**
+     * Builds a selection of all the descendants of a folder in the current account.
+     *
+     * Descendants are selected with a half-open range of paths, that can use the index on
+     * owner and path, and is not fooled by '%' or '_' in the names of files as LIKE is.
+     *
+     * @param folderPath    Remote path of the folder.
+     * @return              Selection and selection arguments for all the descendants of the folder,
+     *                      not including the folder itself.
+     */
+    private Pair<String, String[]> selectionForAllDescendantsOf(String folderPath) {
         String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
-            ProviderTableMeta.FILE_PATH + " LIKE ? ";
+            ProviderTableMeta.FILE_PATH + ">? AND " +
+            ProviderTableMeta.FILE_PATH + "<? ";
         String[] selectionArgs = new String[] {
             mAccount.name,
-            file.getRemotePath() + "_%"     // one or more characters after remote path
+            FileStorageUtils.getDescendantsPathLowerBound(folderPath),
+            FileStorageUtils.getDescendantsPathUpperBound(folderPath)
         };
-        Pair<String, String[]> result = new Pair<String, String[]>(
-            selection,
-            selectionArgs
-        );
-        return result;
+        return new Pair<>(selection, selectionArgs);
+    }
+
+    /**
+     * Builds a selection of a file and, if it is a folder, all its descendants in the current account.
+     *
+     * @param file          File or folder to select.
+     * @return              Selection and selection arguments for the file and all its descendants.
+     */
+    private Pair<String, String[]> selectionForFileAndAllDescendantsOf(OCFile file) {
+        if (!file.isFolder()) {
+            return new Pair<>(
+                ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH + "=? ",
+                new String[] {mAccount.name, file.getRemotePath()}
+            );
+        }
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND (" +
+            ProviderTableMeta.FILE_PATH + "=? OR (" +
+            ProviderTableMeta.FILE_PATH + ">? AND " +
+            ProviderTableMeta.FILE_PATH + "<?)) ";
+        String[] selectionArgs = new String[] {
+            mAccount.name,
+            file.getRemotePath(),
+            FileStorageUtils.getDescendantsPathLowerBound(file.getRemotePath()),
+            FileStorageUtils.getDescendantsPathUpperBound(file.getRemotePath())
+        };
+        return new Pair<>(selection, selectionArgs);
     }
 
     /**
@@ -2165,11 +3113,11 @@ public class FileDataStorageManager {
             if (cursorOnKeptInSync != null && cursorOnKeptInSync.moveToFirst()) {
                 OCFile file;
                 String accountName;
+                FileCursorIndexes columns = new FileCursorIndexes(cursorOnKeptInSync);
+                int accountNameIndex = cursorOnKeptInSync.getColumnIndex(ProviderTableMeta.FILE_ACCOUNT_OWNER);
                 do {
-                    file = createFileInstance(cursorOnKeptInSync);
-                    accountName = cursorOnKeptInSync.getString(
-                            cursorOnKeptInSync.getColumnIndex(ProviderTableMeta.FILE_ACCOUNT_OWNER)
-                    );
+                    file = createFileInstance(cursorOnKeptInSync, columns);
+                    accountName = cursorOnKeptInSync.getString(accountNameIndex);
                     if (!file.isFolder() && AccountUtils.exists(accountName, mContext)) {
                         result.add(new Pair<>(file, accountName));
                     }
@@ -0,0 +1,159 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.os.Parcel;
+import android.util.LruCache;
+
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * In-memory LRU cache of folder listings, keyed by account and folder id.
+ *
+ * Listings are kept marshalled, so every hit returns new {@link OCFile} instances that callers can modify
+ * freely without altering the cached listing. The size of the cache is bounded in bytes.
+ *
+ * Listings must be invalidated by every write in the database that could change them; a listing
+ * loaded from the database while a write was invalidating the cache is discarded, not cached.
+ */
+public class FolderContentCache {
+
+    private static final String TAG = FolderContentCache.class.getSimpleName();
+
+    private static final int MAX_SIZE_IN_BYTES = 4 * 1024 * 1024;
+
+    private static final String KEY_SEPARATOR = ":";
+
+    private static FolderContentCache sInstance = null;
+
+    private final LruCache<String, byte[]> mListings;
+
+    /** Incremented in every invalidation, to detect listings read from the database while invalidated */
+    private long mGeneration = 0;
+
+    public static synchronized FolderContentCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new FolderContentCache(MAX_SIZE_IN_BYTES);
+        }
+        return sInstance;
+    }
+
+    private FolderContentCache(int maxSizeInBytes) {
+        mListings = new LruCache<String, byte[]>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] listing) {
+                return listing.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached listing of a folder.
+     *
+     * @param accountName   Name of the account owning the folder.
+     * @param folderId      Id of the folder in the database.
+     * @return              Sorted children of the folder, or null if not cached.
+     */
+    public Vector<OCFile> get(String accountName, long folderId) {
+        byte[] listing = mListings.get(getKey(accountName, folderId));
+        if (listing == null) {
+            return null;
+        }
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(listing, 0, listing.length);
+            parcel.setDataPosition(0);
+            return new Vector<>(parcel.createTypedArrayList(OCFile.CREATOR));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Returns the current generation of the cache, to be passed to
+     * {@link #put(String, long, List, long)} with a listing read from the database after calling this method.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Caches the listing of a folder, unless the cache was invalidated since the listing was read.
+     *
+     * @param accountName   Name of the account owning the folder.
+     * @param folderId      Id of the folder in the database.
+     * @param children      Sorted children of the folder.
+     * @param generation    Generation of the cache before the listing was read from the database.
+     */
+    public synchronized void put(String accountName, long folderId, List<OCFile> children, long generation) {
+        if (generation != mGeneration) {
+            Log_OC.v(TAG, "Discarding listing of folder " + folderId + ", invalidated while read");
+            return;
+        }
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(children);
+            mListings.put(getKey(accountName, folderId), parcel.marshall());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Removes the cached listing of a folder.
+     *
+     * @param accountName   Name of the account owning the folder.
+     * @param folderId      Id of the folder in the database.
+     */
+    public synchronized void invalidate(String accountName, long folderId) {
+        mGeneration++;
+        mListings.remove(getKey(accountName, folderId));
+    }
+
+    /**
+     * Removes all the cached listings of an account.
+     *
+     * @param accountName   Name of the account which listings will be removed.
+     */
+    public synchronized void invalidateAll(String accountName) {
+        mGeneration++;
+        for (String key : mListings.snapshot().keySet()) {
+            // account names may contain the separator, folder ids don't
+            if (key.substring(0, key.lastIndexOf(KEY_SEPARATOR)).equals(accountName)) {
+                mListings.remove(key);
+            }
+        }
+    }
+
+    public int getHitCount() {
+        return mListings.hitCount();
+    }
+
+    public int getMissCount() {
+        return mListings.missCount();
+    }
+
+    private static String getKey(String accountName, long folderId) {
+        return accountName + KEY_SEPARATOR + folderId;
+    }
+}
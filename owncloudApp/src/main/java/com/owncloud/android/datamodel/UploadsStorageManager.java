@@ -21,19 +21,29 @@
  */
 package com.owncloud.android.datamodel;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.db.UploadResult;
 import com.owncloud.android.files.services.FileUploader;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.operations.UploadFileOperation;
+import com.owncloud.android.utils.FileStorageUtils;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Observable;
 
 /**
@@ -103,6 +113,71 @@ public class UploadsStorageManager extends Observable {
     public long storeUpload(OCUpload ocUpload) {
         Log_OC.v(TAG, "Inserting " + ocUpload.getLocalPath() + " with status=" + ocUpload.getUploadStatus());
 
+        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, createContentValuesForNewUpload(ocUpload));
+
+        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
+        if (result == null) {
+            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
+            return -1;
+        } else {
+            long new_id = Long.parseLong(result.getPathSegments().get(1));
+            ocUpload.setUploadId(new_id);
+            notifyObserversNow();
+            return new_id;
+        }
+    }
+
+    /**
+     * Stores several upload objects in DB, in a single transaction.
+     *
+     * Observers are notified once, after all the uploads are stored.
+     *
+     * @param ocUploads     Upload objects to store; their ids are set if stored successfully.
+     * @return true if all the uploads were stored, false otherwise.
+     */
+    public boolean storeUploads(Collection<OCUpload> ocUploads) {
+        if (ocUploads.isEmpty()) {
+            return true;
+        }
+        Log_OC.v(TAG, "Inserting " + ocUploads.size() + " uploads");
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(ocUploads.size());
+        for (OCUpload ocUpload : ocUploads) {
+            operations.add(
+                    ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_UPLOADS).
+                            withValues(createContentValuesForNewUpload(ocUpload)).
+                            build()
+            );
+        }
+
+        ContentProviderResult[] results;
+        try {
+            results = getDB().applyBatch(MainApp.getAuthority(), operations);
+
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, "Failed to insert " + ocUploads.size() + " items into upload db.", e);
+            return false;
+        }
+
+        boolean allStored = true;
+        int i = 0;
+        for (OCUpload ocUpload : ocUploads) {
+            Uri result = results[i++].uri;
+            if (result == null) {
+                Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
+                ocUpload.setUploadId(-1);
+                allStored = false;
+            } else {
+                ocUpload.setUploadId(Long.parseLong(result.getPathSegments().get(1)));
+            }
+        }
+        Log_OC.d(TAG, "storeUploads stored " + ocUploads.size() + " uploads, all successfully: " + allStored);
+
+        notifyObserversNow();
+        return allStored;
+    }
+
+    private ContentValues createContentValuesForNewUpload(OCUpload ocUpload) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.UPLOADS_LOCAL_PATH, ocUpload.getLocalPath());
         cv.put(ProviderTableMeta.UPLOADS_REMOTE_PATH, ocUpload.getRemotePath());
@@ -115,19 +190,7 @@ public class UploadsStorageManager extends Observable {
         cv.put(ProviderTableMeta.UPLOADS_LAST_RESULT, ocUpload.getLastResult().getValue());
         cv.put(ProviderTableMeta.UPLOADS_CREATED_BY, ocUpload.getCreatedBy());
         cv.put(ProviderTableMeta.UPLOADS_TRANSFER_ID, ocUpload.getTransferId());
-
-        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, cv);
-
-        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
-        if (result == null) {
-            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
-            return -1;
-        } else {
-            long new_id = Long.parseLong(result.getPathSegments().get(1));
-            ocUpload.setUploadId(new_id);
-            notifyObserversNow();
-            return new_id;
-        }
+        return cv;
     }
 
     /**
@@ -316,6 +379,50 @@ public class UploadsStorageManager extends Observable {
         return (uploads.length > 0 ? uploads[0] : null);
     }
 
+    /**
+     * Gets the last upload of every file directly in a folder, with a single query.
+     *
+     * Uploads of files in subfolders are not loaded, so that synchronizing a folder doesn't load the
+     * history of uploads of all its subtree.
+     *
+     * @param folder        Folder containing the uploaded files.
+     * @param accountName   Name of the OC account owning the folder.
+     * @return              Map from remote paths of files to their last upload.
+     */
+    public Map<String, OCUpload> getLastUploadsIn(OCFile folder, String accountName) {
+        OCUpload[] uploads = getUploads(
+                ProviderTableMeta.UPLOADS_REMOTE_PATH + "> ? AND " +
+                        ProviderTableMeta.UPLOADS_REMOTE_PATH + "< ? AND " +
+                        "NOT " + ProviderTableMeta.UPLOADS_REMOTE_PATH + " GLOB ? AND " +
+                        ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
+                new String[]{
+                        FileStorageUtils.getDescendantsPathLowerBound(folder.getRemotePath()),
+                        FileStorageUtils.getDescendantsPathUpperBound(folder.getRemotePath()),
+                        escapeForGlob(folder.getRemotePath()) + "*/*",  // files in subfolders
+                        accountName
+                },
+                ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " desc"
+        );
+        Map<String, OCUpload> lastUploads = new HashMap<>(uploads.length);
+        for (OCUpload upload : uploads) {
+            // sorted from last to first, so the first upload found for every file is the last one
+            if (upload != null && !lastUploads.containsKey(upload.getRemotePath())) {
+                lastUploads.put(upload.getRemotePath(), upload);
+            }
+        }
+        return lastUploads;
+    }
+
+    /**
+     * Escapes the wildcards of GLOB in a text.
+     *
+     * @param text      Text to escape.
+     * @return          Text matching itself in a GLOB pattern.
+     */
+    private static String escapeForGlob(String text) {
+        return text.replace("[", "[[]").replace("*", "[*]").replace("?", "[?]");
+    }
+
     private OCUpload[] getUploads(String selection, String[] selectionArgs, String sortOrder) {
         Cursor c = getDB().query(
                 ProviderTableMeta.CONTENT_URI_UPLOADS,
@@ -326,8 +433,9 @@ public class UploadsStorageManager extends Observable {
         );
         OCUpload[] list = new OCUpload[c.getCount()];
         if (c.moveToFirst()) {
+            UploadCursorIndexes columns = new UploadCursorIndexes(c);
             do {
-                OCUpload upload = createOCUploadFromCursor(c);
+                OCUpload upload = createOCUploadFromCursor(c, columns);
                 if (upload == null) {
                     Log_OC.e(TAG, "OCUpload could not be created from cursor");
                 } else {
@@ -342,32 +450,69 @@ public class UploadsStorageManager extends Observable {
 
 
     private OCUpload createOCUploadFromCursor(Cursor c) {
+        return createOCUploadFromCursor(c, (c != null) ? new UploadCursorIndexes(c) : null);
+    }
+
+    private OCUpload createOCUploadFromCursor(Cursor c, UploadCursorIndexes columns) {
         OCUpload upload = null;
         if (c != null) {
-            String localPath = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH));
-            String remotePath = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_REMOTE_PATH));
-            String accountName = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_ACCOUNT_NAME));
+            String localPath = c.getString(columns.mLocalPath);
+            String remotePath = c.getString(columns.mRemotePath);
+            String accountName = c.getString(columns.mAccountName);
             upload = new OCUpload(localPath, remotePath, accountName);
 
-            upload.setFileSize(c.getLong(c.getColumnIndex(ProviderTableMeta.UPLOADS_FILE_SIZE)));
-            upload.setUploadId(c.getLong(c.getColumnIndex(ProviderTableMeta._ID)));
+            upload.setFileSize(c.getLong(columns.mFileSize));
+            upload.setUploadId(c.getLong(columns.mId));
             upload.setUploadStatus(
-                    UploadStatus.fromValue(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_STATUS)))
+                    UploadStatus.fromValue(c.getInt(columns.mStatus))
             );
-            upload.setLocalAction(c.getInt(c.getColumnIndex((ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR))));
-            upload.setForceOverwrite(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.UPLOADS_FORCE_OVERWRITE)) == 1);
-            upload.setCreateRemoteFolder(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER)) == 1);
-            upload.setUploadEndTimestamp(c.getLong(c.getColumnIndex(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP)));
-            upload.setLastResult(UploadResult.fromValue(
-                    c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_LAST_RESULT))));
-            upload.setCreatedBy(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_CREATED_BY)));
-            upload.setTransferId(c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_TRANSFER_ID)));
+            upload.setLocalAction(c.getInt(columns.mLocalBehaviour));
+            upload.setForceOverwrite(c.getInt(columns.mForceOverwrite) == 1);
+            upload.setCreateRemoteFolder(c.getInt(columns.mIsCreateRemoteFolder) == 1);
+            upload.setUploadEndTimestamp(c.getLong(columns.mUploadEndTimestamp));
+            upload.setLastResult(UploadResult.fromValue(c.getInt(columns.mLastResult)));
+            upload.setCreatedBy(c.getInt(columns.mCreatedBy));
+            upload.setTransferId(c.getString(columns.mTransferId));
         }
         return upload;
     }
 
+    /**
+     * Indexes of the columns of the uploads table in a {@link Cursor}, resolved once per cursor
+     * instead of once per row.
+     */
+    private static class UploadCursorIndexes {
+        final int mId;
+        final int mLocalPath;
+        final int mRemotePath;
+        final int mAccountName;
+        final int mFileSize;
+        final int mStatus;
+        final int mLocalBehaviour;
+        final int mForceOverwrite;
+        final int mIsCreateRemoteFolder;
+        final int mUploadEndTimestamp;
+        final int mLastResult;
+        final int mCreatedBy;
+        final int mTransferId;
+
+        UploadCursorIndexes(Cursor c) {
+            mId = c.getColumnIndex(ProviderTableMeta._ID);
+            mLocalPath = c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH);
+            mRemotePath = c.getColumnIndex(ProviderTableMeta.UPLOADS_REMOTE_PATH);
+            mAccountName = c.getColumnIndex(ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+            mFileSize = c.getColumnIndex(ProviderTableMeta.UPLOADS_FILE_SIZE);
+            mStatus = c.getColumnIndex(ProviderTableMeta.UPLOADS_STATUS);
+            mLocalBehaviour = c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR);
+            mForceOverwrite = c.getColumnIndex(ProviderTableMeta.UPLOADS_FORCE_OVERWRITE);
+            mIsCreateRemoteFolder = c.getColumnIndex(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER);
+            mUploadEndTimestamp = c.getColumnIndex(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP);
+            mLastResult = c.getColumnIndex(ProviderTableMeta.UPLOADS_LAST_RESULT);
+            mCreatedBy = c.getColumnIndex(ProviderTableMeta.UPLOADS_CREATED_BY);
+            mTransferId = c.getColumnIndex(ProviderTableMeta.UPLOADS_TRANSFER_ID);
+        }
+    }
+
     /**
      * Get all uploads which are currently being uploaded or waiting in the queue to be uploaded.
      */
@@ -34,7 +34,7 @@ import com.owncloud.android.MainApp;
 public class ProviderMeta {
 
     public static final String DB_NAME = "filelist";
-    public static final int DB_VERSION = 25;
+    public static final int DB_VERSION = 28;
 
     private ProviderMeta() {
     }
@@ -47,6 +47,7 @@ public class ProviderMeta {
         public static final String USER_AVATARS__TABLE_NAME = "user_avatars";
         public static final String CAMERA_UPLOADS_SYNC_TABLE_NAME = "camera_uploads_sync";
         public static final String USER_QUOTAS_TABLE_NAME = "user_quotas";
+        public static final String SYNC_FRONTIER_TABLE_NAME = "sync_frontier";
 
         public static final Uri CONTENT_URI = Uri.parse("content://"
                 + MainApp.getAuthority() + "/");
@@ -64,13 +65,19 @@ public class ProviderMeta {
                 + MainApp.getAuthority() + "/cameraUploadsSync");
         public static final Uri CONTENT_URI_QUOTAS = Uri.parse("content://"
                 + MainApp.getAuthority() + "/quotas");
+        public static final Uri CONTENT_URI_SYNC_FRONTIER = Uri.parse("content://"
+                + MainApp.getAuthority() + "/syncFrontier");
 
         public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.owncloud.file";
         public static final String CONTENT_TYPE_ITEM = "vnd.android.cursor.item/vnd.owncloud.file";
 
+        // Query parameter to limit the rows returned, as "<count>" or "<offset>,<count>"
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
         // Columns of filelist table
         public static final String FILE_PARENT = "parent";
         public static final String FILE_NAME = "filename";
+        public static final String FILE_NAME_LOWERCASE = "filename_lowercase";   // to filter names ignoring case
         public static final String FILE_CREATION = "created";
         public static final String FILE_MODIFIED = "modified";
         public static final String FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA = "modified_at_last_sync_for_data";
@@ -194,5 +201,11 @@ public class ProviderMeta {
         public static final String USER_QUOTAS__RELATIVE = "relative";
         public static final String USER_QUOTAS__TOTAL = "total";
         public static final String USER_QUOTAS__USED = "used";
+
+        // Columns of sync_frontier table; folders pending in an interrupted full synchronization
+        public static final String SYNC_FRONTIER__ACCOUNT_NAME = "account_name";
+        public static final String SYNC_FRONTIER__PATH = "path";
+        public static final String SYNC_FRONTIER__SERVER_CHANGED = "server_changed";
+        public static final String SYNC_FRONTIER__SYNC_TIME = "sync_time";
     }
 }
\ No newline at end of file
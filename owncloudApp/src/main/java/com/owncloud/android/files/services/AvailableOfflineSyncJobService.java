@@ -42,6 +42,7 @@ import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.operations.RemoteFileBatchReader;
 import com.owncloud.android.operations.SynchronizeFileOperation;
 import com.owncloud.android.ui.activity.ConflictsResolveActivity;
 import com.owncloud.android.ui.notifications.NotificationUtils;
@@ -49,7 +50,10 @@ import com.owncloud.android.utils.Extras;
 import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Job to watch for local changes in available offline files (formerly known as kept-in-sync files) and try to
@@ -104,7 +108,16 @@ public class AvailableOfflineSyncJobService extends JobService {
             return jobParams[0];
         }
 
+        /**
+         * Synchronizes the available offline files modified locally.
+         *
+         * The properties in the server of the modified files are read in batches, one request per parent
+         * folder, instead of one request per file.
+         *
+         * @param availableOfflineFilesForAccount available offline files, with the names of their accounts
+         */
         private void syncAvailableOfflineFiles(List<Pair<OCFile, String>> availableOfflineFilesForAccount) {
+            Map<String, List<OCFile>> modifiedFilesByAccount = new LinkedHashMap<>();
             for (Pair<OCFile, String> fileForAccount : availableOfflineFilesForAccount) {
 
                 String localPath = fileForAccount.first.getStoragePath();
@@ -125,7 +138,34 @@ public class AvailableOfflineSyncJobService extends JobService {
                     continue;
                 }
 
-                startSyncOperation(fileForAccount.first, fileForAccount.second);
+                List<OCFile> modifiedFiles = modifiedFilesByAccount.get(fileForAccount.second);
+                if (modifiedFiles == null) {
+                    modifiedFiles = new ArrayList<>();
+                    modifiedFilesByAccount.put(fileForAccount.second, modifiedFiles);
+                }
+                modifiedFiles.add(fileForAccount.first);
+            }
+
+            for (Map.Entry<String, List<OCFile>> accountFiles : modifiedFilesByAccount.entrySet()) {
+                Account account = AccountUtils.getOwnCloudAccountByName(
+                        mAvailableOfflineJobService,
+                        accountFiles.getKey()
+                );
+                RemoteFileBatchReader batchReader = new RemoteFileBatchReader(account, mAvailableOfflineJobService);
+                List<OCFile> downloadedFiles = new ArrayList<>();
+                for (OCFile file : accountFiles.getValue()) {
+                    if (file.isDown()) {    // the rest will be downloaded without checking the server
+                        downloadedFiles.add(file);
+                    }
+                }
+                Map<String, OCFile> serverFiles = batchReader.readFiles(downloadedFiles);
+                Log_OC.d(TAG, "Read " + serverFiles.size() + " of " + downloadedFiles.size() +
+                        " modified files in " + accountFiles.getKey() + " with " +
+                        batchReader.getRequestsCount() + " requests");
+
+                for (OCFile file : accountFiles.getValue()) {
+                    startSyncOperation(file, accountFiles.getKey(), serverFiles.get(file.getRemotePath()));
+                }
             }
         }
 
@@ -134,8 +174,9 @@ public class AvailableOfflineSyncJobService extends JobService {
          * its remote counterpart in the associated ownCloud account.
          * @param availableOfflineFile file to synchronize
          * @param accountName account to synchronize the available offline file with
+         * @param serverFile properties of the file in the server, or null to read them in the operation
          */
-        private void startSyncOperation(OCFile availableOfflineFile, String accountName) {
+        private void startSyncOperation(OCFile availableOfflineFile, String accountName, OCFile serverFile) {
             if (BuildConfig.DEBUG || MainApp.isBeta()) {
                 Log_OC.i(
                         TAG,
@@ -155,7 +196,7 @@ public class AvailableOfflineSyncJobService extends JobService {
                     );
 
             SynchronizeFileOperation synchronizeFileOperation =
-                    new SynchronizeFileOperation(availableOfflineFile, null, account, false,
+                    new SynchronizeFileOperation(availableOfflineFile, serverFile, account, false,
                             mAvailableOfflineJobService, true);
 
             RemoteOperationResult result = synchronizeFileOperation.
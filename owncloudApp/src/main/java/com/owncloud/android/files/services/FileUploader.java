@@ -81,6 +81,7 @@ import java.lang.ref.WeakReference;
 import java.util.AbstractList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Vector;
 
@@ -391,6 +392,7 @@ public class FileUploader extends Service
 
             String uploadKey;
             UploadFileOperation newUploadFileOperation;
+            Map<OCUpload, UploadFileOperation> newUploads = new LinkedHashMap<>();
             try {
                 for (OCFile ocFile : files) {
 
@@ -444,13 +446,16 @@ public class FileUploader extends Service
                     if (putResult != null) {
                         uploadKey = putResult.first;
                         requestedUploads.add(uploadKey);
-
-                        // Save upload in database
-                        long id = mUploadsStorageManager.storeUpload(ocUpload);
-                        newUploadFileOperation.setOCUploadId(id);
+                        newUploads.put(ocUpload, newUploadFileOperation);
                     }
                 }
 
+                // Save uploads in database, all at once
+                mUploadsStorageManager.storeUploads(newUploads.keySet());
+                for (Map.Entry<OCUpload, UploadFileOperation> newUpload : newUploads.entrySet()) {
+                    newUpload.getValue().setOCUploadId(newUpload.getKey().getUploadId());
+                }
+
             } catch (IllegalArgumentException e) {
                 Log_OC.e(TAG, "Not enough information provided in intent: " + e.getMessage());
                 return START_NOT_STICKY;
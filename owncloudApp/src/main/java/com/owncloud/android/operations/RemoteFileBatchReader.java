@@ -0,0 +1,119 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.operations;
+
+import android.accounts.Account;
+import android.content.Context;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.ReadRemoteFolderOperation;
+import com.owncloud.android.lib.resources.files.RemoteFile;
+import com.owncloud.android.utils.FileStorageUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the properties in the server of several files at once, grouping them by parent folder and
+ * reading every parent folder with a single request, instead of a request per file.
+ *
+ * Files alone in their parent folder are not read, since reading them one by one is cheaper than
+ * reading all the folder. Files not read are left to {@link SynchronizeFileOperation}, that will read
+ * them when executed.
+ */
+public class RemoteFileBatchReader {
+
+    /** Minimum number of files in the same folder to read the folder instead of every file */
+    private static final int MIN_FILES_TO_READ_FOLDER = 2;
+
+    private final RemoteFolderPrefetcher.FolderReader mFolderReader;
+
+    private int mRequestsCount = 0;
+
+    /**
+     * @param account           ownCloud account holding the files to read.
+     * @param context           Android context.
+     */
+    public RemoteFileBatchReader(final Account account, final Context context) {
+        this(remotePath -> new ReadRemoteFolderOperation(remotePath).execute(account, context));
+    }
+
+    RemoteFileBatchReader(RemoteFolderPrefetcher.FolderReader folderReader) {
+        mFolderReader = folderReader;
+    }
+
+    /**
+     * Reads the properties in the server of a set of files.
+     *
+     * @param files             Files to read, all of them in the same account.
+     * @return                  Map from remote paths to the files read from the server, ready to pass to
+     *                          {@link SynchronizeFileOperation}. Files not in the map were not read, or were
+     *                          not found in their parent folder.
+     */
+    public Map<String, OCFile> readFiles(Collection<OCFile> files) {
+        Map<String, Set<String>> filesByParent = new LinkedHashMap<>();
+        for (OCFile file : files) {
+            String parentPath = FileStorageUtils.getParentPath(file.getRemotePath());
+            Set<String> siblings = filesByParent.get(parentPath);
+            if (siblings == null) {
+                siblings = new HashSet<>();
+                filesByParent.put(parentPath, siblings);
+            }
+            siblings.add(file.getRemotePath());
+        }
+
+        Map<String, OCFile> serverFiles = new HashMap<>();
+        long syncDate = System.currentTimeMillis();
+        for (Map.Entry<String, Set<String>> parent : filesByParent.entrySet()) {
+            if (parent.getValue().size() < MIN_FILES_TO_READ_FOLDER) {
+                continue;
+            }
+            RemoteOperationResult<ArrayList<RemoteFile>> result = mFolderReader.read(parent.getKey());
+            mRequestsCount++;
+            if (!result.isSuccess()) {
+                continue;   // files will be read one by one
+            }
+            List<RemoteFile> folderAndFiles = result.getData();
+            for (int i = 1; i < folderAndFiles.size(); i++) {   // first is the folder itself
+                RemoteFile remoteFile = folderAndFiles.get(i);
+                if (parent.getValue().contains(remoteFile.getRemotePath())) {
+                    OCFile serverFile = FileStorageUtils.createOCFileFrom(remoteFile);
+                    serverFile.setLastSyncDateForProperties(syncDate);
+                    serverFiles.put(serverFile.getRemotePath(), serverFile);
+                }
+            }
+        }
+        return serverFiles;
+    }
+
+    /**
+     * @return  Number of requests sent to the server.
+     */
+    public int getRequestsCount() {
+        return mRequestsCount;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.operations;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.lib.resources.files.ReadRemoteFolderOperation;
+import com.owncloud.android.lib.resources.files.RemoteFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches in advance the list of files in folders that will be synchronized soon, so that the
+ * requests to the server are sent while the results of previous folders are still merged in the
+ * local database.
+ *
+ * The number of folders fetched and not claimed yet by {@link #take(String)} is bounded by the
+ * prefetch depth. All the requests are sent with the same {@link OwnCloudClient}, reusing its
+ * connections to the server.
+ */
+public class RemoteFolderPrefetcher {
+
+    private static final String TAG = RemoteFolderPrefetcher.class.getSimpleName();
+
+    /**
+     * Reads the list of files in a remote folder.
+     */
+    interface FolderReader {
+        RemoteOperationResult<ArrayList<RemoteFile>> read(String remotePath);
+    }
+
+    private final FolderReader mFolderReader;
+    private final int mPrefetchDepth;
+    private final ExecutorService mExecutor;
+
+    /** Folders fetched or being fetched, not claimed yet */
+    private final Map<String, Future<RemoteOperationResult<ArrayList<RemoteFile>>>> mPrefetchedFolders =
+            new HashMap<>();
+
+    private boolean mShutdown = false;
+    private int mPrefetchesCount = 0;
+    private int mHitsCount = 0;
+
+    /**
+     * @param client            Client used to read the remote folders.
+     * @param prefetchDepth     Maximum number of folders fetched in advance at the same time; must be
+     *                          greater than 0.
+     */
+    public RemoteFolderPrefetcher(final OwnCloudClient client, int prefetchDepth) {
+        this(remotePath -> new ReadRemoteFolderOperation(remotePath).execute(client), prefetchDepth);
+    }
+
+    RemoteFolderPrefetcher(FolderReader folderReader, int prefetchDepth) {
+        mFolderReader = folderReader;
+        mPrefetchDepth = prefetchDepth;
+        mExecutor = Executors.newFixedThreadPool(prefetchDepth);
+    }
+
+    /**
+     * Starts fetching the list of files in a remote folder, unless it's already fetched or the
+     * prefetch depth is reached.
+     *
+     * @param remotePath        Remote path of the folder to fetch.
+     */
+    public synchronized void prefetch(final String remotePath) {
+        if (mShutdown || mPrefetchedFolders.size() >= mPrefetchDepth ||
+                mPrefetchedFolders.containsKey(remotePath)) {
+            return;
+        }
+        mPrefetchedFolders.put(remotePath, mExecutor.submit(() -> mFolderReader.read(remotePath)));
+        mPrefetchesCount++;
+    }
+
+    /**
+     * Claims the list of files in a remote folder fetched in advance, waiting for the fetch to
+     * finish if needed.
+     *
+     * @param remotePath        Remote path of the folder.
+     * @return                  Result of reading the remote folder, or null if it was not prefetched
+     *                          and must be fetched by the caller.
+     */
+    public RemoteOperationResult<ArrayList<RemoteFile>> take(String remotePath) {
+        Future<RemoteOperationResult<ArrayList<RemoteFile>>> prefetchedFolder;
+        synchronized (this) {
+            prefetchedFolder = mPrefetchedFolders.remove(remotePath);
+            if (prefetchedFolder == null) {
+                return null;
+            }
+            mHitsCount++;
+        }
+        try {
+            return prefetchedFolder.get();
+
+        } catch (ExecutionException e) {
+            Log_OC.e(TAG, "Unexpected error prefetching " + remotePath, e.getCause());
+            return null;
+
+        } catch (InterruptedException e) {
+            Log_OC.w(TAG, "Interrupted while waiting for prefetch of " + remotePath);
+            prefetchedFolder.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the fetches in progress and discards the fetched folders not claimed yet.
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        for (Future<RemoteOperationResult<ArrayList<RemoteFile>>> prefetchedFolder :
+                mPrefetchedFolders.values()) {
+            prefetchedFolder.cancel(true);
+        }
+        mPrefetchedFolders.clear();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return  Number of folders fetched in advance.
+     */
+    public synchronized int getPrefetchesCount() {
+        return mPrefetchesCount;
+    }
+
+    /**
+     * @return  Number of folders fetched in advance and claimed later.
+     */
+    public synchronized int getHitsCount() {
+        return mHitsCount;
+    }
+}
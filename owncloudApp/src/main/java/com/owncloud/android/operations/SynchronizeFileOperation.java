@@ -60,6 +60,9 @@ public class SynchronizeFileOperation extends SyncOperation {
     private boolean mTransferWasRequested = false;
     private boolean mRequestedFromAvOfflineJobService;
 
+    /** Held while the local database is updated */
+    private Object mDatabaseWriteLock = new Object();
+
     /**
      * Constructor for "full synchronization mode".
      *
@@ -138,6 +141,18 @@ public class SynchronizeFileOperation extends SyncOperation {
     }
 
 
+    /**
+     * Sets the lock to hold while the local database is updated with the result of the synchronization.
+     *
+     * Synchronizations of files run in parallel share the same lock, so that only one of them updates
+     * the database at a time, while the rest still access the server.
+     *
+     * @param lock      Lock shared with other synchronizations.
+     */
+    public void setDatabaseWriteLock(Object lock) {
+        mDatabaseWriteLock = lock;
+    }
+
     @Override
     protected RemoteOperationResult run(OwnCloudClient client) {
 
@@ -190,7 +205,9 @@ public class SynchronizeFileOperation extends SyncOperation {
                 /// decide action to perform depending upon changes
                 if (localChanged && serverChanged) {
                     result = new RemoteOperationResult<>(ResultCode.SYNC_CONFLICT);
-                    getStorageManager().saveConflict(mLocalFile, mServerFile.getEtag());
+                    synchronized (mDatabaseWriteLock) {
+                        getStorageManager().saveConflict(mLocalFile, mServerFile.getEtag());
+                    }
 
                 } else if (localChanged) {
                     if(mPushOnly) {
@@ -218,7 +235,9 @@ public class SynchronizeFileOperation extends SyncOperation {
 
                 // safe blanket: sync'ing a not in-conflict file will clean wrong conflict markers in ancestors
                 if (result.getCode() != ResultCode.SYNC_CONFLICT) {
-                    getStorageManager().saveConflict(mLocalFile, null);
+                    synchronized (mDatabaseWriteLock) {
+                        getStorageManager().saveConflict(mLocalFile, null);
+                    }
                 }
             }
         }
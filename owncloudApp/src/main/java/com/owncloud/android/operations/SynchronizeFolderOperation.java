@@ -44,10 +44,17 @@ import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -65,6 +72,15 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
 
     private static final String TAG = SynchronizeFolderOperation.class.getSimpleName();
 
+    /** Folders with more files than this are merged in batches, see {@link #mergeRemoteFolderInBatches(ArrayList)} */
+    private static final int MERGE_IN_BATCHES_THRESHOLD = 2000;
+
+    /** Maximum number of files merged and saved in every batch */
+    private static final int MERGE_BATCH_SIZE = 500;
+
+    /** Maximum number of files which contents are synchronized at the same time */
+    private static final int MAX_PARALLEL_FILE_SYNCS = 4;
+
     /** Time stamp for the synchronization process in progress */
     private long mCurrentSyncTime;
 
@@ -101,6 +117,18 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
     /** Files and folders contained in the synchronized folder after a successful operation */
     private List<Pair<OCFile, Boolean>> mFoldersToVisit;
 
+    /** Number of subfolders found changed in the server during the merge */
+    private int mFoldersToExpand;
+
+    /** ETag of the folder in the server when merged; null if not merged */
+    private String mMergedEtag;
+
+    /** Names of the files in the local folder where the contents of the folder are saved by default */
+    private Set<String> mFileNamesInDefaultPath;
+
+    /** Last upload of every file in the folder, loaded on demand by {@link #isBlockedForAutomatedSync(OCFile)} */
+    private Map<String, OCUpload> mLastUploads;
+
     /**
      * When 'true', will assume that folder did not change in the server and
      * will focus only in push any local change to the server (carefully).
@@ -114,6 +142,12 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      * otherwise, only contents of available offline files will be synchronized. */
     private final boolean mSyncContentOfRegularFiles;
 
+    /** Held while the local database is updated */
+    private Object mDatabaseWriteLock = new Object();
+
+    /** Source of the list of files in the folder fetched in advance, if any */
+    private RemoteFolderPrefetcher mRemoteFolderPrefetcher;
+
     /**
      * Creates a new instance of {@link SynchronizeFolderOperation}.
      *
@@ -164,6 +198,28 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         return mForgottenLocalFiles;
     }
 
+    /**
+     * Sets the lock to hold while the local database is updated with the changes found.
+     *
+     * Folder synchronizations run in parallel share the same lock, so that only one of them updates
+     * the database at a time, while the rest still access the server.
+     *
+     * @param lock      Lock shared with other folder synchronizations.
+     */
+    public void setDatabaseWriteLock(Object lock) {
+        mDatabaseWriteLock = lock;
+    }
+
+    /**
+     * Sets a prefetcher that may have fetched the list of files in the folder in advance; the list is
+     * fetched by the operation if not.
+     *
+     * @param prefetcher    Prefetcher of remote folders shared with other folder synchronizations.
+     */
+    public void setRemoteFolderPrefetcher(RemoteFolderPrefetcher prefetcher) {
+        mRemoteFolderPrefetcher = prefetcher;
+    }
+
 
 
     /**
@@ -177,6 +233,14 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         return mFoldersToVisit;
     }
 
+    /**
+     * @return  ETag of the folder in the server when its contents were merged in the local database, or
+     *          null if they were not merged.
+     */
+    public String getMergedEtag() {
+        return mMergedEtag;
+    }
+
     /**
      * Performs the synchronization.
      *
@@ -189,6 +253,8 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         mFailsInFileSyncsFound = 0;
         mConflictsFound = 0;
         mForgottenLocalFiles.clear();
+        mLastUploads = null;
+        mMergedEtag = null;
 
         try {
             // get locally cached information about folder
@@ -197,7 +263,9 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             if (mPushOnly) {
                 // assuming there is no update in the server side, still need to handle local changes
                 Log_OC.i(TAG, "Push only sync of " + mAccount.name + mRemotePath);
-                preparePushOfLocalChanges();
+                synchronized (mDatabaseWriteLock) {
+                    preparePushOfLocalChanges();
+                }
                 syncContents();
                 //pushOnlySync();
                 return new RemoteOperationResult<>(ResultCode.OK);
@@ -208,13 +276,21 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
 
                 if (fetchFolderResult.isSuccess()) {
                     // success - merge updates in server with local state
-                    mergeRemoteFolder(fetchFolderResult.getData());
+                    synchronized (mDatabaseWriteLock) {
+                        if (fetchFolderResult.getData().size() - 1 > MERGE_IN_BATCHES_THRESHOLD) {
+                            mergeRemoteFolderInBatches(fetchFolderResult.getData());
+                        } else {
+                            mergeRemoteFolder(fetchFolderResult.getData());
+                        }
+                    }
                     syncContents();
 
                 } else {
                     // fail fetching the server
                     if (fetchFolderResult.getCode() == ResultCode.FILE_NOT_FOUND) {
-                        removeLocalFolder();
+                        synchronized (mDatabaseWriteLock) {
+                            removeLocalFolder();
+                        }
                     }
                     if (fetchFolderResult.isException()) {
                         Log_OC.e(TAG, "Checked " + mAccount.name + mRemotePath  + " : " +
@@ -248,6 +324,15 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             throw new OperationCancelledException();
         }
 
+        if (mRemoteFolderPrefetcher != null) {
+            RemoteOperationResult<ArrayList<RemoteFile>> prefetchedResult =
+                    mRemoteFolderPrefetcher.take(mRemotePath);
+            if (prefetchedResult != null) {
+                Log_OC.v(TAG, "Using list of files prefetched for " + mAccount.name + mRemotePath);
+                return prefetchedResult;
+            }
+        }
+
         ReadRemoteFolderOperation readFolderOperation = new ReadRemoteFolderOperation(mRemotePath);
         return readFolderOperation.execute(client);
     }
@@ -318,68 +403,187 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             localFilesMap.put(file.getRemoteId(), file);
         }
 
+        loadFileNamesInDefaultPath();
+
         // loop to synchronize every child
-        OCFile remoteFile, localFile, updatedLocalFile;
+        OCFile localFile;
         RemoteFile r;
-        int foldersToExpand = 0;
+        mFoldersToExpand = 0;
         for (int i=1; i<folderAndFiles.size(); i++) {
-            /// new OCFile instance with the data from the server
             r = folderAndFiles.get(i);
-            remoteFile = FileStorageUtils.createOCFileFrom(r);
-
-            /// new OCFile instance to merge fresh data from server with local state
-            updatedLocalFile = FileStorageUtils.createOCFileFrom(r);
 
             /// retrieve local data for the read file
-            localFile = localFilesMap.remove(remoteFile.getRemoteId());
-
-            /// add to updatedFile data about LOCAL STATE (not existing in server)
-            updatedLocalFile.setLastSyncDateForProperties(mCurrentSyncTime);
-            if (localFile != null) {
-                updatedLocalFile.copyLocalPropertiesFrom(localFile);
-                updatedLocalFile.setFileName(remoteFile.getFileName());
-                // remote eTag will not be set unless file CONTENTS are synchronized
-                updatedLocalFile.setEtag(localFile.getEtag());
-                if (!updatedLocalFile.isFolder() &&
-                    remoteFile.isImage() &&
-                    remoteFile.getModificationTimestamp() != localFile.getModificationTimestamp()) {
-                    updatedLocalFile.setNeedsUpdateThumbnail(true);
-                }
+            localFile = localFilesMap.remove(r.getRemoteId());
+
+            updatedFiles.add(mergeRemoteFile(r, localFile, updatedFolder));
+        }
+
+        // save updated contents in local database
+        if (mFoldersToExpand == 0) {
+            // subtree synchronized; when not, FileSyncAdapter sets the tree ETag after syncing the subfolders
+            updatedFolder.setTreeEtag(updatedFolder.getEtag());
+        }
+        storageManager.saveFolder(updatedFolder, updatedFiles, localFilesMap.values());
+        mMergedEtag = updatedFolder.getEtag();
+    }
 
+    /**
+     *  Synchronizes the data retrieved from the server about the contents of the target folder
+     *  with the current data in the local database, in batches of bounded size.
+     *
+     *  Same as {@link #mergeRemoteFolder(ArrayList)}, but without loading all the local contents of the
+     *  folder at once. Remote files are sorted by remote id and compared with windows of the local files
+     *  read from the database in the same order; every window is merged and saved before reading the next
+     *  one. The folder itself is saved at the end, so that its ETag is not updated if the merge is
+     *  interrupted.
+     *
+     *  Grants that mFoldersToVisit is updated with fresh data after execution.
+     *
+     *  @param folderAndFiles   Remote folder and children files in folder
+     */
+    private void mergeRemoteFolderInBatches(ArrayList<RemoteFile> folderAndFiles)
+            throws OperationCancelledException {
+        Log_OC.d(TAG, "Synchronizing " + mAccount.name + mRemotePath + " in batches");
+
+        FileDataStorageManager storageManager = getStorageManager();
+
+        OCFile updatedFolder = FileStorageUtils.createOCFileFrom(folderAndFiles.get(0));
+        updatedFolder.copyLocalPropertiesFrom(mLocalFolder);
+
+        mFoldersToVisit = new Vector<>();
+        mFilesToSyncContents.clear();
+        mFoldersToExpand = 0;
+        loadFileNamesInDefaultPath();
+
+        // same order as the database; remote ids are ASCII, so String order matches SQLite BINARY collation
+        List<RemoteFile> remoteFiles = folderAndFiles.subList(1, folderAndFiles.size());
+        Collections.sort(remoteFiles, (a, b) -> getMergeKey(a.getRemoteId()).compareTo(getMergeKey(b.getRemoteId())));
+
+        List<OCFile> updatedFiles = new ArrayList<>(MERGE_BATCH_SIZE);
+        List<OCFile> filesToRemove = new ArrayList<>();
+        List<OCFile> localFiles =
+                storageManager.getFolderContentSortedByRemoteId(mLocalFolder, null, MERGE_BATCH_SIZE);
+        int localIndex = 0;
+        int remoteIndex = 0;
+        while (remoteIndex < remoteFiles.size() || !localFiles.isEmpty()) {
+            if (mCancellationRequested.get()) {
+                throw new OperationCancelledException();
+            }
+            if (localIndex == localFiles.size() && !localFiles.isEmpty()) {
+                // next window of local files, after the last one read; not affected by the files saved
+                OCFile lastLocalFile = localFiles.get(localFiles.size() - 1);
+                localFiles = storageManager.getFolderContentSortedByRemoteId(
+                        mLocalFolder,
+                        lastLocalFile,
+                        MERGE_BATCH_SIZE
+                );
+                localIndex = 0;
+                continue;
+            }
+            OCFile localFile = (localIndex < localFiles.size()) ? localFiles.get(localIndex) : null;
+            RemoteFile remoteFile = (remoteIndex < remoteFiles.size()) ? remoteFiles.get(remoteIndex) : null;
+            int comparison;
+            if (localFile == null) {
+                comparison = 1;
+            } else if (remoteFile == null) {
+                comparison = -1;
             } else {
-                updatedLocalFile.setParentId(mLocalFolder.getFileId());
-                // remote eTag will not be set unless file CONTENTS are synchronized
-                updatedLocalFile.setEtag("");
-                // new files need to check av-off status of parent folder!
-                if (updatedFolder.isAvailableOffline()) {
-                    updatedLocalFile.setAvailableOfflineStatus(
-                        OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT
-                    );
+                comparison = getMergeKey(localFile.getRemoteId()).compareTo(getMergeKey(remoteFile.getRemoteId()));
+                if (comparison == 0 && getMergeKey(localFile.getRemoteId()).isEmpty()) {
+                    comparison = -1;    // files without remote id never match
                 }
             }
 
-            /// check and fix, if needed, local storage path
-            searchForLocalFileInDefaultPath(updatedLocalFile);
-
-            /// prepare content synchronizations
-            boolean serverUnchanged = addToSyncContents(updatedLocalFile, remoteFile);
-            if (updatedLocalFile.isFolder() && !serverUnchanged) {
-                foldersToExpand++;
+            if (comparison < 0) {
+                // local file not in the server anymore
+                filesToRemove.add(localFile);
+                localIndex++;
+            } else if (comparison > 0) {
+                // new file in the server
+                updatedFiles.add(mergeRemoteFile(remoteFile, null, updatedFolder));
+                remoteIndex++;
+            } else {
+                updatedFiles.add(mergeRemoteFile(remoteFile, localFile, updatedFolder));
+                localIndex++;
+                remoteIndex++;
             }
 
-            updatedFiles.add(updatedLocalFile);
+            if (updatedFiles.size() + filesToRemove.size() >= MERGE_BATCH_SIZE) {
+                storageManager.saveFolderContentBatch(updatedFolder, updatedFiles, filesToRemove);
+                updatedFiles.clear();
+                filesToRemove.clear();
+            }
         }
+        storageManager.saveFolderContentBatch(updatedFolder, updatedFiles, filesToRemove);
 
-        // save updated contents in local database
-        if (foldersToExpand == 0) {
+        // save folder after its contents
+        if (mFoldersToExpand == 0) {
             updatedFolder.setTreeEtag(updatedFolder.getEtag());
-            // TODO - propagate up
         }
-        storageManager.saveFolder(updatedFolder, updatedFiles, localFilesMap.values());
+        storageManager.saveFolder(updatedFolder, new ArrayList<>(), new ArrayList<>());
+        mMergedEtag = updatedFolder.getEtag();
+    }
+
+    private static String getMergeKey(String remoteId) {
+        return (remoteId == null) ? "" : remoteId;
+    }
+
+    /**
+     *  Merges the data retrieved from the server about a file in the target folder with its local state.
+     *
+     *  Prepares the synchronization of its contents, if needed.
+     *
+     *  @param r                    Data of the file in the server.
+     *  @param localFile            Data of the file in the local database, or null if new.
+     *  @param updatedFolder        Target folder, with fresh data from the server.
+     *  @return                     File with the data from the server and the local state, to save in the
+     *                              local database.
+     */
+    private OCFile mergeRemoteFile(RemoteFile r, OCFile localFile, OCFile updatedFolder) {
+        /// new OCFile instance with the data from the server, to merge with the local state
+        OCFile updatedLocalFile = FileStorageUtils.createOCFileFrom(r);
+
+        /// add to updatedFile data about LOCAL STATE (not existing in server)
+        updatedLocalFile.setLastSyncDateForProperties(mCurrentSyncTime);
+        if (localFile != null) {
+            updatedLocalFile.copyLocalPropertiesFrom(localFile);
+            // remote eTag will not be set unless file CONTENTS are synchronized
+            updatedLocalFile.setEtag(localFile.getEtag());
+            if (!updatedLocalFile.isFolder() &&
+                updatedLocalFile.isImage() &&
+                updatedLocalFile.getModificationTimestamp() != localFile.getModificationTimestamp()) {
+                updatedLocalFile.setNeedsUpdateThumbnail(true);
+            }
+
+        } else {
+            updatedLocalFile.setParentId(mLocalFolder.getFileId());
+            // remote eTag will not be set unless file CONTENTS are synchronized
+            updatedLocalFile.setEtag("");
+            // new files need to check av-off status of parent folder!
+            if (updatedFolder.isAvailableOffline()) {
+                updatedLocalFile.setAvailableOfflineStatus(
+                    OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT
+                );
+            }
+        }
+
+        /// check and fix, if needed, local storage path
+        searchForLocalFileInDefaultPath(updatedLocalFile);
+
+        /// prepare content synchronizations
+        boolean serverUnchanged = addToSyncContents(updatedLocalFile, r);
+        if (updatedLocalFile.isFolder() && !serverUnchanged) {
+            mFoldersToExpand++;
+        }
+
+        return updatedLocalFile;
     }
 
 
     private void preparePushOfLocalChanges() {
+        // server side did not change, but local copies might have been lost by the database
+        getStorageManager().bindLostLocalFilesIn(mLocalFolder);
+
         List<OCFile> children = getStorageManager().getFolderContent(mLocalFolder);
         mFoldersToVisit = new Vector<>(children.size());
         for (OCFile child : children) {
@@ -397,11 +601,11 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      * Stores the operations in mFoldersToSyncContents and mFilesToSyncContents.
      *
      * @param localFile         Local information about the file which contents might be sync'ed.
-     * @param remoteFile        Server information of the file.
+     * @param remoteFile        Server information of the file, or null if not fetched.
      * @return                  'True' when the received file was not changed in the server side from the
      *                          last synchronization.
      */
-    private boolean addToSyncContents(OCFile localFile, OCFile remoteFile) {
+    private boolean addToSyncContents(OCFile localFile, RemoteFile remoteFile) {
 
         boolean shouldSyncContents = (mSyncContentOfRegularFiles || localFile.isAvailableOffline());
         boolean serverUnchanged;
@@ -439,12 +643,13 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
                 /// synchronization for files
                 SynchronizeFileOperation operation = new SynchronizeFileOperation(
                     localFile,
-                    remoteFile,
+                    (remoteFile == null) ? null : FileStorageUtils.createOCFileFrom(remoteFile),
                     mAccount,
                     serverUnchanged,
                     mContext,
                         false
                 );
+                operation.setDatabaseWriteLock(mDatabaseWriteLock);
                 mFilesToSyncContents.add(operation);
             }
         }
@@ -456,32 +661,36 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      * Performs a list of synchronization operations, determining if a download or upload is needed
      * or if exists conflict due to changes both in local and remote contents of the each file.
      *
+     * Up to {@link #MAX_PARALLEL_FILE_SYNCS} files are checked at the same time, since every check may
+     * need a round-trip to the server, while their updates to the local database hold the database write
+     * lock one at a time. Results are processed in this thread.
+     *
      * If download or upload is needed, request the operation to the corresponding service and goes
      * on.
      */
     private void syncContents() throws OperationCancelledException {
 
         Log_OC.v(TAG, "Starting content synchronization... ");
-        RemoteOperationResult contentsResult;
-        for (SyncOperation op: mFilesToSyncContents) {
-            if (mCancellationRequested.get()) {
-                throw new OperationCancelledException();
-            }
-            contentsResult = op.execute(getStorageManager(), mContext);
-            if (!contentsResult.isSuccess()) {
-                if (contentsResult.getCode() == ResultCode.SYNC_CONFLICT) {
-                    mConflictsFound++;
-                } else {
-                    mFailsInFileSyncsFound++;
-                    if (contentsResult.getException() != null) {
-                        Log_OC.e(TAG, "Error while synchronizing file : "   // Vs " av-off file"
-                            + contentsResult.getLogMessage(), contentsResult.getException());
-                    } else {
-                        Log_OC.e(TAG, "Error while synchronizing file : "
-                            + contentsResult.getLogMessage());
-                    }
+        if (!mFilesToSyncContents.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(MAX_PARALLEL_FILE_SYNCS, mFilesToSyncContents.size())
+            );
+            try {
+                List<Future<RemoteOperationResult>> contentsResults = new ArrayList<>(mFilesToSyncContents.size());
+                for (SyncOperation op : mFilesToSyncContents) {
+                    contentsResults.add(executor.submit(() -> {
+                        if (mCancellationRequested.get()) {
+                            throw new OperationCancelledException();
+                        }
+                        return op.execute(getStorageManager(), mContext);
+                    }));
                 }
-            }   // won't let these fails break the synchronization process
+                for (Future<RemoteOperationResult> contentsResult : contentsResults) {
+                    processContentsResult(contentsResult);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
         }
         for (Intent intent: mFoldersToSyncContents) {
             if (mCancellationRequested.get()) {
@@ -491,6 +700,46 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         }
     }
 
+    /**
+     * Waits for the synchronization of the contents of a file and updates the counters of conflicts and
+     * fails with its result.
+     *
+     * @param future        Pending result of the synchronization of the contents of a file.
+     */
+    private void processContentsResult(Future<RemoteOperationResult> future) throws OperationCancelledException {
+        RemoteOperationResult contentsResult;
+        try {
+            contentsResult = future.get();
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OperationCancelledException) {
+                throw (OperationCancelledException) e.getCause();
+            }
+            mFailsInFileSyncsFound++;
+            Log_OC.e(TAG, "Unexpected error while synchronizing file", e.getCause());
+            return;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCancelledException();
+        }
+
+        if (!contentsResult.isSuccess()) {
+            if (contentsResult.getCode() == ResultCode.SYNC_CONFLICT) {
+                mConflictsFound++;
+            } else {
+                mFailsInFileSyncsFound++;
+                if (contentsResult.getException() != null) {
+                    Log_OC.e(TAG, "Error while synchronizing file : "   // Vs " av-off file"
+                        + contentsResult.getLogMessage(), contentsResult.getException());
+                } else {
+                    Log_OC.e(TAG, "Error while synchronizing file : "
+                        + contentsResult.getLogMessage());
+                }
+            }
+        }   // won't let these fails break the synchronization process
+    }
+
     /**
      /**
      * Scans the default location for saving local copies of files searching for
@@ -510,16 +759,28 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      * @param file      File to associate a possible 'lost' local file.
      */
     private void searchForLocalFileInDefaultPath(OCFile file) {
-        if (file.getStoragePath() == null && !file.isFolder()) {
+        if (file.getStoragePath() == null && !file.isFolder() &&
+                mFileNamesInDefaultPath.contains(file.getFileName())) {
             File f = new File(FileStorageUtils.getDefaultSavePathFor(mAccount.name, file));
-            if (f.exists()) {
-                file.setStoragePath(f.getAbsolutePath());
-                file.setLastSyncDateForData(f.lastModified());
-            }
+            file.setStoragePath(f.getAbsolutePath());
+            file.setLastSyncDateForData(f.lastModified());
         }
     }
 
-    
+    /**
+     * Lists at once the files in the local folder where the contents of the synchronized folder are saved by
+     * default, so that {@link #searchForLocalFileInDefaultPath(OCFile)} doesn't need to check the existence of
+     * every file in the folder.
+     */
+    private void loadFileNamesInDefaultPath() {
+        mFileNamesInDefaultPath = new HashSet<>();
+        String[] fileNames = new File(FileStorageUtils.getDefaultSavePathFor(mAccount.name, mLocalFolder)).list();
+        if (fileNames != null) {   // null if the local folder doesn't exist
+            Collections.addAll(mFileNamesInDefaultPath, fileNames);
+        }
+    }
+
+
     /**
      * Cancel operation
      */
@@ -539,13 +800,18 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      * Checks the last upload of a file and determines if automated synchronization needs to wait for
      * user action or not.
      *
+     * The last uploads of all the files in the folder are read at once the first time.
+     *
      * @param file      ownCloud file to check.
      * @return          'True' if the received file should not be automatically sync'ed due to a previous
      *                  upload error that requires an user action.
      */
     private boolean isBlockedForAutomatedSync(OCFile file) {
-        UploadsStorageManager uploadsStorageManager = new UploadsStorageManager(mContext.getContentResolver());
-        OCUpload failedUpload = uploadsStorageManager.getLastUploadFor(file, mAccount.name);
+        if (mLastUploads == null) {
+            UploadsStorageManager uploadsStorageManager = new UploadsStorageManager(mContext.getContentResolver());
+            mLastUploads = uploadsStorageManager.getLastUploadsIn(mLocalFolder, mAccount.name);
+        }
+        OCUpload failedUpload = mLastUploads.get(file.getRemotePath());
         if (failedUpload != null) {
             switch (failedUpload.getLastResult()) {
                 case CREDENTIAL_ERROR:
@@ -563,4 +829,8 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
     public String getRemotePath() {
         return mRemotePath;
     }
+
+    public boolean isPushOnly() {
+        return mPushOnly;
+    }
 }
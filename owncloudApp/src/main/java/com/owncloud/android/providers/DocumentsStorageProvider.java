@@ -103,7 +103,7 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         final OCFile browsedDir = mCurrentStorageManager.getFileById(folderId);
 
         // Create result cursor before syncing folder again, in order to enable faster loading
-        for (OCFile file : mCurrentStorageManager.getFolderContent(browsedDir))
+        for (OCFile file : mCurrentStorageManager.getFolderContentForListRows(browsedDir))
             resultCursor.addFile(file);
 
         /**
@@ -40,6 +40,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
 import android.os.CancellationSignal;
 import android.os.ParcelFileDescriptor;
 import androidx.annotation.NonNull;
@@ -61,6 +62,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * The ContentProvider for the ownCloud App.
@@ -77,13 +80,22 @@ public class FileContentProvider extends ContentProvider {
     private static final int UPLOADS = 6;
     private static final int CAMERA_UPLOADS_SYNC = 7;
     private static final int QUOTAS = 8;
+    private static final int SYNC_FRONTIER = 9;
 
     private static final String TAG = FileContentProvider.class.getSimpleName();
 
     private static final String MAX_SUCCESSFUL_UPLOADS = "30";
 
+    private static final int DB_CACHE_SIZE_KB = 4096;
+
     private UriMatcher mUriMatcher;
 
+    /**
+     * URIs to notify when the batch of operations in progress in the current thread is committed;
+     * null out of batches
+     */
+    private final ThreadLocal<Set<Uri>> mBatchNotifications = new ThreadLocal<>();
+
     private static HashMap<String, String> mFileProjectionMap = new HashMap<>();
 
     static {
@@ -91,6 +103,7 @@ public class FileContentProvider extends ContentProvider {
         mFileProjectionMap.put(ProviderTableMeta._ID, ProviderTableMeta._ID);
         mFileProjectionMap.put(ProviderTableMeta.FILE_PARENT, ProviderTableMeta.FILE_PARENT);
         mFileProjectionMap.put(ProviderTableMeta.FILE_NAME, ProviderTableMeta.FILE_NAME);
+        mFileProjectionMap.put(ProviderTableMeta.FILE_NAME_LOWERCASE, ProviderTableMeta.FILE_NAME_LOWERCASE);
         mFileProjectionMap.put(ProviderTableMeta.FILE_CREATION, ProviderTableMeta.FILE_CREATION);
         mFileProjectionMap.put(ProviderTableMeta.FILE_MODIFIED, ProviderTableMeta.FILE_MODIFIED);
         mFileProjectionMap.put(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
@@ -238,7 +251,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri, null);
         return count;
     }
 
@@ -263,42 +276,36 @@ public class FileContentProvider extends ContentProvider {
                                 + ")" : ""), whereArgs);
                 break;
             case DIRECTORY:
-                // deletion of folder is recursive
-
-                Cursor children = query(uri, null, null, null, null);
-                if (children != null && children.moveToFirst()) {
-                    long childId;
-                    boolean isDir;
-                    while (!children.isAfterLast()) {
-                        childId = children.getLong(children.getColumnIndex(ProviderTableMeta._ID));
-                        isDir = "DIR".equals(children.getString(
-                                children.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)
-                        ));
-                        if (isDir) {
-                            count += delete(
-                                    db,
-                                    ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, childId),
-                                    null,
-                                    null
-                            );
-                        } else {
-                            count += delete(
-                                    db,
-                                    ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, childId),
-                                    null,
-                                    null
-                            );
-                        }
-                        children.moveToNext();
+                // deletion of folder is recursive; all the descendants are removed in a single statement
+                String folderId = uri.getPathSegments().get(1);
+                String folderWhere = ProviderTableMeta._ID + "=" + folderId +
+                        (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : "");
+                Cursor folder = db.query(
+                        ProviderTableMeta.FILE_TABLE_NAME,
+                        new String[]{ProviderTableMeta.FILE_PATH, ProviderTableMeta.FILE_ACCOUNT_OWNER},
+                        folderWhere,
+                        whereArgs,
+                        null, null, null
+                );
+                if (folder != null) {
+                    if (folder.moveToFirst()) {
+                        String folderPath = folder.getString(0);
+                        String accountName = folder.getString(1);
+                        count += db.delete(
+                                ProviderTableMeta.FILE_TABLE_NAME,
+                                ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
+                                        ProviderTableMeta.FILE_PATH + ">? AND " +
+                                        ProviderTableMeta.FILE_PATH + "<?",
+                                new String[]{
+                                        accountName,
+                                        FileStorageUtils.getDescendantsPathLowerBound(folderPath),
+                                        FileStorageUtils.getDescendantsPathUpperBound(folderPath)
+                                }
+                        );
                     }
-                    children.close();
+                    folder.close();
                 }
-                count += db.delete(ProviderTableMeta.FILE_TABLE_NAME,
-                        ProviderTableMeta._ID
-                                + "="
-                                + uri.getPathSegments().get(1)
-                                + (!TextUtils.isEmpty(where) ? " AND (" + where
-                                + ")" : ""), whereArgs);
+                count += db.delete(ProviderTableMeta.FILE_TABLE_NAME, folderWhere, whereArgs);
 
                 break;
             case ROOT_DIRECTORY:
@@ -320,6 +327,9 @@ public class FileContentProvider extends ContentProvider {
             case QUOTAS:
                 count = db.delete(ProviderTableMeta.USER_QUOTAS_TABLE_NAME, where, whereArgs);
                 break;
+            case SYNC_FRONTIER:
+                count = db.delete(ProviderTableMeta.SYNC_FRONTIER_TABLE_NAME, where, whereArgs);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown uri: " + uri.toString());
         }
@@ -350,7 +360,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        getContext().getContentResolver().notifyChange(newUri, null);
+        notifyChange(newUri, values);
         return newUri;
     }
 
@@ -453,6 +463,16 @@ public class FileContentProvider extends ContentProvider {
                     throw new SQLException("ERROR " + uri);
                 }
                 return insertedQuotaUri;
+            case SYNC_FRONTIER:
+                Uri insertedFrontierUri;
+                long frontierId = db.insert(ProviderTableMeta.SYNC_FRONTIER_TABLE_NAME, null, values);
+                if (frontierId > 0) {
+                    insertedFrontierUri =
+                            ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_SYNC_FRONTIER, frontierId);
+                } else {
+                    throw new SQLException("ERROR " + uri);
+                }
+                return insertedFrontierUri;
             default:
                 throw new IllegalArgumentException("Unknown uri id: " + uri);
         }
@@ -503,6 +523,8 @@ public class FileContentProvider extends ContentProvider {
         mUriMatcher.addURI(authority, "cameraUploadsSync/#", CAMERA_UPLOADS_SYNC);
         mUriMatcher.addURI(authority, "quotas/", QUOTAS);
         mUriMatcher.addURI(authority, "quotas/#", QUOTAS);
+        mUriMatcher.addURI(authority, "syncFrontier/", SYNC_FRONTIER);
+        mUriMatcher.addURI(authority, "syncFrontier/#", SYNC_FRONTIER);
 
         return true;
     }
@@ -517,16 +539,10 @@ public class FileContentProvider extends ContentProvider {
             String sortOrder
     ) {
 
-        Cursor result = null;
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
-        db.beginTransaction();
-        try {
-            result = query(db, uri, projection, selection, selectionArgs, sortOrder);
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
-        return result;
+        // out of a transaction, readers can use the pool of connections and not wait for writers;
+        // no selection depends on settings of a single connection, such as case_sensitive_like
+        return query(db, uri, projection, selection, selectionArgs, sortOrder);
     }
 
     private Cursor query(
@@ -601,6 +617,13 @@ public class FileContentProvider extends ContentProvider {
                             + uri.getPathSegments().get(1));
                 }
                 break;
+            case SYNC_FRONTIER:
+                sqlQuery.setTables(ProviderTableMeta.SYNC_FRONTIER_TABLE_NAME);
+                if (uri.getPathSegments().size() > 1) {
+                    sqlQuery.appendWhere(ProviderTableMeta._ID + "="
+                            + uri.getPathSegments().get(1));
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown uri id: " + uri);
         }
@@ -620,6 +643,9 @@ public class FileContentProvider extends ContentProvider {
                 case CAMERA_UPLOADS_SYNC:
                     order = ProviderTableMeta.CAMERA_UPLOADS_SYNC_DEFAULT_SORT_ORDER;
                     break;
+                case SYNC_FRONTIER:
+                    order = ProviderTableMeta._ID;
+                    break;
                 default: // Files
                     order = ProviderTableMeta.FILE_DEFAULT_SORT_ORDER;
                     break;
@@ -628,9 +654,9 @@ public class FileContentProvider extends ContentProvider {
             order = sortOrder;
         }
 
-        // DB case_sensitive
-        db.execSQL("PRAGMA case_sensitive_like = true");
-        Cursor c = sqlQuery.query(db, projection, selection, selectionArgs, null, null, order);
+        String limit = uri.getQueryParameter(ProviderTableMeta.QUERY_PARAMETER_LIMIT);
+
+        Cursor c = sqlQuery.query(db, projection, selection, selectionArgs, null, null, order, limit);
         c.setNotificationUri(getContext().getContentResolver(), uri);
         return c;
     }
@@ -647,7 +673,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri, values);
         return count;
     }
 
@@ -681,6 +707,8 @@ public class FileContentProvider extends ContentProvider {
                         selectionArgs);
             case QUOTAS:
                 return db.update(ProviderTableMeta.USER_QUOTAS_TABLE_NAME, values, selection, selectionArgs);
+            case SYNC_FRONTIER:
+                return db.update(ProviderTableMeta.SYNC_FRONTIER_TABLE_NAME, values, selection, selectionArgs);
             default:
                 return db.update(
                         ProviderTableMeta.FILE_TABLE_NAME, values, selection, selectionArgs
@@ -697,6 +725,13 @@ public class FileContentProvider extends ContentProvider {
         ContentProviderResult[] results = new ContentProviderResult[operations.size()];
         int i = 0;
 
+        // notifications of the operations are merged and sent when the batch is committed
+        boolean outerBatch = (mBatchNotifications.get() == null);
+        if (outerBatch) {
+            mBatchNotifications.set(new LinkedHashSet<Uri>());
+        }
+        Set<Uri> notifications = mBatchNotifications.get();
+
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         db.beginTransaction();  // it's supposed that transactions can be nested
         try {
@@ -707,11 +742,53 @@ public class FileContentProvider extends ContentProvider {
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            if (outerBatch) {
+                mBatchNotifications.remove();
+            }
         }
         Log_OC.d("FileContentProvider", "applied batch in provider " + this);
+
+        if (outerBatch) {
+            for (Uri uri : notifications) {
+                getContext().getContentResolver().notifyChange(uri, null);
+            }
+            Log_OC.d(TAG, "Sent " + notifications.size() + " notifications for " + operations.size() +
+                    " operations in batch");
+        }
         return results;
     }
 
+    /**
+     * Notifies a change in the given URI to registered observers, or defers the notification until the
+     * end of the batch of operations in progress, if any.
+     *
+     * Inside a batch, changes in files are notified in the URI of their parent folder when known, so
+     * that a batch of operations on the content of a folder results in a single notification.
+     *
+     * @param uri       URI changed.
+     * @param values    Values inserted or updated in the URI; null for deletions.
+     */
+    private void notifyChange(Uri uri, ContentValues values) {
+        if (uri == null) {
+            return;
+        }
+        Set<Uri> batchNotifications = mBatchNotifications.get();
+        if (batchNotifications == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+
+        } else {
+            int match = mUriMatcher.match(uri);
+            Long parentId = (values != null) ? values.getAsLong(ProviderTableMeta.FILE_PARENT) : null;
+            if ((match == SINGLE_FILE || match == ROOT_DIRECTORY) && parentId != null) {
+                batchNotifications.add(
+                        ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, parentId)
+                );
+            } else {
+                batchNotifications.add(uri);
+            }
+        }
+    }
+
 
     private class DataBaseHelper extends SQLiteOpenHelper {
 
@@ -720,6 +797,32 @@ public class FileContentProvider extends ContentProvider {
 
         }
 
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            super.onConfigure(db);
+            configure(db);
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                configure(db);  // onConfigure is not called before API 16
+            }
+        }
+
+        /**
+         * Settings of the database, applied once when it's opened instead of once per query.
+         */
+        private void configure(SQLiteDatabase db) {
+            if (!db.isReadOnly()) {
+                // write-ahead logging lets the UI read while the sync adapter writes
+                db.enableWriteAheadLogging();
+            }
+            db.execSQL("PRAGMA synchronous = NORMAL");  // safe with WAL, only last commits at risk on power loss
+            db.execSQL("PRAGMA cache_size = -" + DB_CACHE_SIZE_KB);
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
             // files table
@@ -743,6 +846,14 @@ public class FileContentProvider extends ContentProvider {
 
             // Create camera upload sync table
             createCameraUploadsSyncTable(db);
+
+            // Create table of folders pending in interrupted synchronizations
+            createSyncFrontierTable(db);
+
+            // Create indexes for the access patterns of the storage managers
+            createFilesTableIndexes(db);
+            createOCSharesTableIndexes(db);
+            createUploadsTableIndexes(db);
         }
 
         @Override
@@ -1098,6 +1209,47 @@ public class FileContentProvider extends ContentProvider {
                 }
             }
 
+            if (oldVersion < 26 && newVersion >= 26) {
+                Log_OC.i("SQL", "Entering in the #26 ADD in onUpgrade");
+                db.beginTransaction();
+                try {
+                    createFilesTableIndexes(db);
+                    createOCSharesTableIndexes(db);
+                    createUploadsTableIndexes(db);
+                    db.setTransactionSuccessful();
+                    upgraded = true;
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (oldVersion < 27 && newVersion >= 27) {
+                Log_OC.i("SQL", "Entering in the #27 ADD in onUpgrade");
+                db.beginTransaction();
+                try {
+                    createSyncFrontierTable(db);
+                    db.setTransactionSuccessful();
+                    upgraded = true;
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (oldVersion < 28 && newVersion >= 28) {
+                Log_OC.i("SQL", "Entering in the #28 ADD in onUpgrade");
+                db.beginTransaction();
+                try {
+                    db.execSQL("ALTER TABLE " + ProviderTableMeta.FILE_TABLE_NAME +
+                            " ADD COLUMN " + ProviderTableMeta.FILE_NAME_LOWERCASE + " TEXT " +
+                            " DEFAULT NULL");
+                    fillLowercaseFileNames(db);
+                    db.setTransactionSuccessful();
+                    upgraded = true;
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
             if (!upgraded) {
                 Log_OC.i("SQL", "OUT of the ADD in onUpgrade; oldVersion == " + oldVersion +
                         ", newVersion == " + newVersion);
@@ -1105,10 +1257,36 @@ public class FileContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Fills the lowercase names of the files already in the database.
+     *
+     * Done in Java instead of with SQL lower(), that only handles ASCII characters.
+     */
+    private void fillLowercaseFileNames(SQLiteDatabase db) {
+        Cursor c = db.query(
+                ProviderTableMeta.FILE_TABLE_NAME,
+                new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_NAME},
+                null, null, null, null, null
+        );
+        try {
+            ContentValues cv = new ContentValues();
+            String[] whereArgs = new String[1];
+            while (c.moveToNext()) {
+                String name = c.getString(1);
+                cv.put(ProviderTableMeta.FILE_NAME_LOWERCASE, (name != null) ? name.toLowerCase() : null);
+                whereArgs[0] = String.valueOf(c.getLong(0));
+                db.update(ProviderTableMeta.FILE_TABLE_NAME, cv, ProviderTableMeta._ID + "=?", whereArgs);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
     private void createFilesTable(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE " + ProviderTableMeta.FILE_TABLE_NAME + "("
                 + ProviderTableMeta._ID + " INTEGER PRIMARY KEY, "
                 + ProviderTableMeta.FILE_NAME + " TEXT, "
+                + ProviderTableMeta.FILE_NAME_LOWERCASE + " TEXT, "
                 + ProviderTableMeta.FILE_PATH + " TEXT, "
                 + ProviderTableMeta.FILE_PARENT + " INTEGER, "
                 + ProviderTableMeta.FILE_CREATION + " INTEGER, "
@@ -1135,6 +1313,40 @@ public class FileContentProvider extends ContentProvider {
         );
     }
 
+    /**
+     * Creates the indexes on the files table matching the queries done by
+     * {@link com.owncloud.android.datamodel.FileDataStorageManager}: children of a folder,
+     * lookups by remote path, by local storage path and by remote id in an account,
+     * and the available offline files.
+     *
+     * @param db Database where table of files is included.
+     */
+    private void createFilesTableIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + "_parent_idx ON "
+                + ProviderTableMeta.FILE_TABLE_NAME + "("
+                + ProviderTableMeta.FILE_PARENT + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + "_owner_path_idx ON "
+                + ProviderTableMeta.FILE_TABLE_NAME + "("
+                + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", "
+                + ProviderTableMeta.FILE_PATH + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + "_owner_media_path_idx ON "
+                + ProviderTableMeta.FILE_TABLE_NAME + "("
+                + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", "
+                + ProviderTableMeta.FILE_STORAGE_PATH + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + "_owner_remote_id_idx ON "
+                + ProviderTableMeta.FILE_TABLE_NAME + "("
+                + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", "
+                + ProviderTableMeta.FILE_REMOTE_ID + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + "_keep_in_sync_idx ON "
+                + ProviderTableMeta.FILE_TABLE_NAME + "("
+                + ProviderTableMeta.FILE_KEEP_IN_SYNC + ");"
+        );
+    }
+
     private void createOCSharesTable(SQLiteDatabase db) {
         // Create ocshares table
         db.execSQL("CREATE TABLE " + ProviderTableMeta.OCSHARES_TABLE_NAME + "("
@@ -1210,6 +1422,32 @@ public class FileContentProvider extends ContentProvider {
         );
     }
 
+    private void createOCSharesTableIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.OCSHARES_TABLE_NAME + "_owner_path_idx ON "
+                + ProviderTableMeta.OCSHARES_TABLE_NAME + "("
+                + ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + ", "
+                + ProviderTableMeta.OCSHARES_PATH + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.OCSHARES_TABLE_NAME + "_owner_remote_id_idx ON "
+                + ProviderTableMeta.OCSHARES_TABLE_NAME + "("
+                + ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + ", "
+                + ProviderTableMeta.OCSHARES_ID_REMOTE_SHARED + ");"
+        );
+    }
+
+    private void createUploadsTableIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.UPLOADS_TABLE_NAME + "_account_remote_path_idx ON "
+                + ProviderTableMeta.UPLOADS_TABLE_NAME + "("
+                + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + ", "
+                + ProviderTableMeta.UPLOADS_REMOTE_PATH + ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ProviderTableMeta.UPLOADS_TABLE_NAME + "_status_idx ON "
+                + ProviderTableMeta.UPLOADS_TABLE_NAME + "("
+                + ProviderTableMeta.UPLOADS_STATUS + ", "
+                + ProviderTableMeta.UPLOADS_LAST_RESULT + ");"
+        );
+    }
+
     private void createUserAvatarsTable(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE " + ProviderTableMeta.USER_AVATARS__TABLE_NAME + "("
                 + ProviderTableMeta._ID + " INTEGER PRIMARY KEY, "
@@ -1239,6 +1477,16 @@ public class FileContentProvider extends ContentProvider {
         );
     }
 
+    private void createSyncFrontierTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ProviderTableMeta.SYNC_FRONTIER_TABLE_NAME + "("
+                + ProviderTableMeta._ID + " INTEGER PRIMARY KEY, "
+                + ProviderTableMeta.SYNC_FRONTIER__ACCOUNT_NAME + " TEXT, "
+                + ProviderTableMeta.SYNC_FRONTIER__PATH + " TEXT, "
+                + ProviderTableMeta.SYNC_FRONTIER__SERVER_CHANGED + " INTEGER, "
+                + ProviderTableMeta.SYNC_FRONTIER__SYNC_TIME + " INTEGER );"
+        );
+    }
+
     /**
      * Version 10 of database does not modify its scheme. It coincides with the upgrade of the ownCloud account names
      * structure to include in it the path to the server instance. Updating the account names and path to local files
@@ -0,0 +1,69 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import java.util.List;
+
+/**
+ * Feed of the changes in the files of an account in the server, such as a WebDAV sync-token REPORT,
+ * used by {@link DeltaChangeSource}.
+ *
+ * Positions in the feed are given by opaque cursors.
+ */
+public interface ChangeFeed {
+
+    /**
+     * Changes in the server after a cursor.
+     */
+    class Changes {
+
+        private final List<String> mChangedPaths;
+        private final String mCursor;
+
+        /**
+         * @param changedPaths      Remote paths of the files and folders created, modified or removed.
+         * @param cursor            Cursor after the last change.
+         */
+        public Changes(List<String> changedPaths, String cursor) {
+            mChangedPaths = changedPaths;
+            mCursor = cursor;
+        }
+
+        public List<String> getChangedPaths() {
+            return mChangedPaths;
+        }
+
+        public String getCursor() {
+            return mCursor;
+        }
+    }
+
+    /**
+     * @return      Cursor after the last change in the server, or null if it can't be read.
+     */
+    String getCurrentCursor();
+
+    /**
+     * @param cursor    Cursor returned in a previous call.
+     * @return          Changes in the server after the cursor, or null if they can't be read, for instance
+     *                  because the cursor expired.
+     */
+    Changes getChangesSince(String cursor);
+}
@@ -0,0 +1,44 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import java.util.List;
+
+/**
+ * Source of the changes in the server that a full account synchronization must bring to the local
+ * database, as the folders where they happened.
+ */
+interface ChangeSource {
+
+    /**
+     * Returns the folders to synchronize. Their subfolders changed in the server are synchronized too,
+     * following their tree ETags.
+     *
+     * @return      Remote paths of the folders to start the synchronization from.
+     */
+    List<String> getChangedFolders();
+
+    /**
+     * Called when the synchronization of the folders returned by {@link #getChangedFolders()} ends.
+     *
+     * @param completed     'true' if all the changes were synchronized without errors.
+     */
+    void onSynchronizationFinished(boolean completed);
+}
@@ -0,0 +1,122 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Finds the changes in the server reading a {@link ChangeFeed} from the cursor stored by the last
+ * completed synchronization, so that only the folders containing changes are synchronized.
+ *
+ * Falls back to walking all the tree of folders, as {@link TreeWalkChangeSource}, when there is no cursor
+ * stored or the feed can't be read from it. The new cursor is read before synchronizing, so that changes
+ * done during the synchronization are read again next time; it's stored only if the synchronization
+ * completes.
+ */
+class DeltaChangeSource implements ChangeSource {
+
+    /**
+     * Keeps the cursor in the feed between synchronizations.
+     */
+    interface CursorStore {
+
+        /**
+         * @return      Cursor stored, or null if none.
+         */
+        String load();
+
+        void save(String cursor);
+    }
+
+    private final ChangeFeed mChangeFeed;
+    private final CursorStore mCursorStore;
+
+    /** Cursor to store when the synchronization is completed; null if none */
+    private String mNewCursor;
+
+    /**
+     * @param changeFeed        Feed of changes in the server.
+     * @param cursorStore       Storage of the cursor of the last completed synchronization.
+     */
+    DeltaChangeSource(ChangeFeed changeFeed, CursorStore cursorStore) {
+        mChangeFeed = changeFeed;
+        mCursorStore = cursorStore;
+    }
+
+    @Override
+    public List<String> getChangedFolders() {
+        String storedCursor = mCursorStore.load();
+        if (storedCursor != null) {
+            ChangeFeed.Changes changes = mChangeFeed.getChangesSince(storedCursor);
+            if (changes != null) {
+                mNewCursor = changes.getCursor();
+                return getFoldersToSynchronize(changes.getChangedPaths());
+            }
+            // cursor expired or feed not available; walk all the tree
+        }
+        mNewCursor = mChangeFeed.getCurrentCursor();
+        return Collections.singletonList(OCFile.ROOT_PATH);
+    }
+
+    @Override
+    public void onSynchronizationFinished(boolean completed) {
+        if (completed && mNewCursor != null) {
+            mCursorStore.save(mNewCursor);
+        }
+    }
+
+    /**
+     * Finds the minimal set of folders to synchronize to bring a set of changes to the local database.
+     *
+     * Every change is brought synchronizing its parent folder, unless an ancestor of the parent is also
+     * synchronized; the changed tree ETags of the folders in between lead to the parent.
+     *
+     * @param changedPaths      Remote paths of changed files and folders.
+     * @return                  Remote paths of the folders to synchronize, sorted.
+     */
+    static List<String> getFoldersToSynchronize(Collection<String> changedPaths) {
+        TreeSet<String> parents = new TreeSet<>();
+        for (String changedPath : changedPaths) {
+            parents.add(getParentPath(changedPath));
+        }
+        List<String> folders = new ArrayList<>();
+        for (String parent : parents) {
+            // sorted, so an ancestor would be the last folder added
+            if (folders.isEmpty() || !parent.startsWith(folders.get(folders.size() - 1))) {
+                folders.add(parent);
+            }
+        }
+        return folders;
+    }
+
+    private static String getParentPath(String remotePath) {
+        String path = remotePath.endsWith(OCFile.PATH_SEPARATOR) ?
+                remotePath.substring(0, remotePath.length() - 1) :
+                remotePath;
+        int lastSeparator = path.lastIndexOf(OCFile.PATH_SEPARATOR);
+        return (lastSeparator < 0) ? OCFile.ROOT_PATH : path.substring(0, lastSeparator + 1);
+    }
+}
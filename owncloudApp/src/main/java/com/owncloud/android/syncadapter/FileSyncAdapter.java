@@ -46,15 +46,26 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode;
 import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.operations.RemoteFolderPrefetcher;
 import com.owncloud.android.operations.SyncCapabilitiesOperation;
 import com.owncloud.android.operations.SynchronizeFolderOperation;
 import com.owncloud.android.ui.activity.ErrorsWhileCopyingHandlerActivity;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import at.bitfire.dav4android.exception.DavException;
 
@@ -87,15 +98,56 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
             ".EXTRA_FOLDER_PATH";
     public static final String EXTRA_RESULT = FileSyncAdapter.class.getName() + ".EXTRA_RESULT";
 
+    /** Key of the sync extra setting the maximum number of folders synchronized at the same time */
+    public static final String EXTRA_MAX_PARALLEL_FOLDER_SYNCS = FileSyncAdapter.class.getName() +
+            ".EXTRA_MAX_PARALLEL_FOLDER_SYNCS";
+
+    /** Number of folders synchronized at the same time when not set in the sync extras */
+    private static final int DEFAULT_MAX_PARALLEL_FOLDER_SYNCS = 4;
+
+    /** Key of the sync extra setting the maximum number of folders fetched in advance; 0 disables it */
+    public static final String EXTRA_FOLDER_PREFETCH_DEPTH = FileSyncAdapter.class.getName() +
+            ".EXTRA_FOLDER_PREFETCH_DEPTH";
+
+    /** Number of folders fetched in advance when not set in the sync extras */
+    private static final int DEFAULT_FOLDER_PREFETCH_DEPTH = 4;
+
     private static final int MAX_REPEAT_COUNTER = 1;
 
+    /** Number of folders synchronized between saves of the folders pending, to resume if the process dies */
+    private static final int SYNC_FRONTIER_CHECKPOINT_INTERVAL = 100;
+
+    /** Maximum age of the folders pending of an interrupted synchronization to resume from them */
+    private static final long MAX_SYNC_FRONTIER_AGE_MS = 24 * 60 * 60 * 1000;
+
+    /** Key of the account data keeping the cursor in the change feed of the last completed synchronization */
+    private static final String KEY_CHANGE_FEED_CURSOR = "oc_change_feed_cursor";
+
     private static final String FILE_SYNC_NOTIFICATION_CHANNEL_ID = "FILE_SYNC_NOTIFICATION_CHANNEL";
 
     /** Time stamp for the current synchronization process, used to distinguish fresh data */
     private long mCurrentSyncTime;
     
     /** Flag made 'true' when a request to cancel the synchronization is received */
-    private boolean mCancellation;
+    private volatile boolean mCancellation;
+
+    /** Maximum number of folders synchronized at the same time */
+    private int mMaxParallelFolderSyncs;
+
+    /** Maximum number of folders fetched in advance */
+    private int mFolderPrefetchDepth;
+
+    /** Fetches the folders that will be synchronized next, while others are merged; null if disabled */
+    private RemoteFolderPrefetcher mFolderPrefetcher;
+
+    /** Tracks when the subtrees of the fetched folders are completely synchronized */
+    private SubtreeSyncTracker mSubtreeSyncTracker;
+
+    /** Decides which subfolders of the fetched folders are visited */
+    private UnchangedSubtreeFilter mUnchangedSubtreeFilter;
+
+    /** Held by the folder synchronizations while updating the database, so that only one writes at a time */
+    private final Object mDatabaseWriteLock = new Object();
     
     /** When 'true' the process was requested by the user through the user interface;
      *  when 'false', it was requested automatically by the system */
@@ -153,6 +205,14 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
 
         mCancellation = false;
         mIsManualSync = extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false);
+        mMaxParallelFolderSyncs = Math.max(
+                1,
+                extras.getInt(EXTRA_MAX_PARALLEL_FOLDER_SYNCS, DEFAULT_MAX_PARALLEL_FOLDER_SYNCS)
+        );
+        mFolderPrefetchDepth = Math.max(
+                0,
+                extras.getInt(EXTRA_FOLDER_PREFETCH_DEPTH, DEFAULT_FOLDER_PREFETCH_DEPTH)
+        );
         mFailedResultsCounter = 0;
         mLastFailedResult = null;
         mConflictsFound = 0;
@@ -184,10 +244,33 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
         try {
             updateCapabilities();
             mCurrentSyncTime = System.currentTimeMillis();
-            if (!mCancellation) {
-                synchronizeFolder(getStorageManager().getFileByPath(OCFile.ROOT_PATH), false);
-                
-            } else {
+            long interruptedSyncTime = getStorageManager().getSyncFrontierTime();
+            if (interruptedSyncTime > 0 && mCurrentSyncTime - interruptedSyncTime > MAX_SYNC_FRONTIER_AGE_MS) {
+                Log_OC.d(TAG, "Discarding folders pending of a synchronization interrupted too long ago");
+                getStorageManager().deleteSyncFrontier();
+                interruptedSyncTime = 0;
+            }
+            boolean resumed = true;
+            if (!mCancellation && interruptedSyncTime > 0) {
+                // finish the last synchronization from the folders pending when interrupted
+                mCurrentSyncTime = interruptedSyncTime;
+                List<Pair<OCFile, Boolean>> pendingFolders = getStorageManager().getSyncFrontier();
+                Log_OC.d(TAG, "Resuming interrupted synchronization with " + pendingFolders.size() +
+                        " folders pending");
+                resumed = synchronizeFolders(pendingFolders);
+                mCurrentSyncTime = System.currentTimeMillis();
+            }
+
+            if (!mCancellation && resumed) {
+                // folders visited before the interruption may have changed in the server since then; subtrees
+                // completed in the resumed synchronization are skipped by their tree ETags
+                ChangeSource changeSource = createChangeSource();
+                List<Pair<OCFile, Boolean>> changedFolders = getLocalFolders(changeSource.getChangedFolders());
+                Log_OC.d(TAG, "Synchronizing changes from " + changedFolders.size() + " folders");
+                boolean completed = synchronizeFolders(changedFolders);
+                changeSource.onSynchronizationFinished(completed && mFailedResultsCounter == 0);
+
+            } else if (mCancellation) {
                 Log_OC.d(TAG, "Leaving synchronization before synchronizing the root folder " +
                         "because cancelation request");
             }
@@ -221,11 +304,11 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
      * Called by system SyncManager when a synchronization is required to be cancelled.
      * 
      * Sets the mCancellation flag to 'true'. THe synchronization will be stopped later, 
-     * before a new folder is fetched. Data of the last folder synchronized will be still 
+     * before a new folder is fetched. Data of the folders being synchronized at that moment will be still
      * locally saved. 
      * 
      * See {@link #onPerformSync(Account, Bundle, String, ContentProviderClient, SyncResult)}
-     * and {@link #synchronizeFolder(OCFile, boolean)}.
+     * and {@link #synchronizeFolders(List)}.
      */
     @Override
     public void onSyncCanceled() {
@@ -248,25 +331,228 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
 
 
     /**
-     *  Synchronizes the list of files contained in a folder identified with its remote path.
-     *  
-     *  Fetches the list and properties of the files contained in the given folder, including their 
-     *  properties, and updates the local database with them.
-     *  
-     *  Enters in the child folders to synchronize their contents also, following a recursive
-     *  depth first strategy. 
-     * 
+     *  Creates the source of the changes to synchronize: a feed of changes if the server provides one,
+     *  or a walk of all the tree of folders otherwise.
+     *
+     *  @return                         Source of the changes to synchronize.
+     */
+    private ChangeSource createChangeSource() {
+        ChangeFeed changeFeed = createChangeFeed();
+        if (changeFeed == null) {
+            return new TreeWalkChangeSource();
+        }
+        return new DeltaChangeSource(changeFeed, new DeltaChangeSource.CursorStore() {
+            @Override
+            public String load() {
+                return getAccountManager().getUserData(getAccount(), KEY_CHANGE_FEED_CURSOR);
+            }
+
+            @Override
+            public void save(String cursor) {
+                getAccountManager().setUserData(getAccount(), KEY_CHANGE_FEED_CURSOR, cursor);
+            }
+        });
+    }
+
+    /**
+     *  Creates the feed of changes in the server for the current account, if any.
+     *
+     *  The ownCloud library doesn't read any feed of changes yet, so full synchronizations walk the tree of
+     *  folders; this is the place to plug one in.
+     *
+     *  @return                         Feed of changes in the server, or null if not available.
+     */
+    protected ChangeFeed createChangeFeed() {
+        return null;
+    }
+
+    /**
+     *  Gets the local folders to start the synchronization of a list of remote folders from.
+     *
+     *  Folders unknown in the local database are replaced by their closest known ancestor, which
+     *  synchronization will reach them.
+     *
+     *  @param remotePaths              Remote paths of folders to synchronize.
+     *  @return                         Local folders to synchronize, without repetitions, with boolean values
+     *                                  signaling they must be fetched from the server.
+     */
+    private List<Pair<OCFile, Boolean>> getLocalFolders(List<String> remotePaths) {
+        Map<String, OCFile> folders = new LinkedHashMap<>();
+        for (String remotePath : remotePaths) {
+            OCFile folder = getStorageManager().getFileByPath(remotePath);
+            while (folder == null && !OCFile.ROOT_PATH.equals(remotePath)) {
+                remotePath = new File(remotePath).getParent();
+                remotePath = remotePath.endsWith(OCFile.PATH_SEPARATOR) ?
+                        remotePath : remotePath + OCFile.PATH_SEPARATOR;
+                folder = getStorageManager().getFileByPath(remotePath);
+            }
+            if (folder != null) {
+                folders.put(folder.getRemotePath(), folder);
+            }
+        }
+        List<Pair<OCFile, Boolean>> changedFolders = new ArrayList<>(folders.size());
+        for (OCFile folder : folders.values()) {
+            changedFolders.add(new Pair<>(folder, true));
+        }
+        return changedFolders;
+    }
+
+    /**
+     *  Synchronizes the list of files contained in some folders and all their descendants.
+     *
+     *  Folders pending of synchronization are kept in a queue, and up to {@link #mMaxParallelFolderSyncs}
+     *  of them are synchronized at the same time. Only this thread updates the queue and the statistics of
+     *  the synchronization, when every folder synchronization finishes; the child folders of a folder are
+     *  enqueued after it's synchronized, depth first.
+     *
+     *  Stops enqueuing new folders when the synchronization is cancelled or fails too much, but waits for
+     *  the folders already started.
+     *
+     *  Subfolders that didn't change in the server since their subtrees were completely synchronized, as told
+     *  by their tree ETags, are not visited unless they contain available offline files which local changes
+     *  need to be pushed. When the subtree of a fetched folder is completely synchronized, its tree ETag is
+     *  updated, so that the next synchronization can skip it.
+     *
+     *  The folders pending and in progress are saved in the database every
+     *  {@link #SYNC_FRONTIER_CHECKPOINT_INTERVAL} folders, and when the synchronization is stopped before
+     *  visiting all the folders, so that the next synchronization resumes from them instead of starting
+     *  over. They are removed when all the folders are visited.
+     *
+     *  @param startFolders             Folders to synchronize with their descendants, with boolean values
+     *                                  signaling if there are pending changes to sync in the server.
+     *  @return                         'true' if all the folders were visited, 'false' if the synchronization
+     *                                  was stopped before.
+     */
+    private boolean synchronizeFolders(List<Pair<OCFile, Boolean>> startFolders) {
+        Deque<Pair<OCFile, Boolean>> pendingFolders = new ArrayDeque<>();
+        for (int i = startFolders.size() - 1; i >= 0; i--) {
+            pendingFolders.push(startFolders.get(i));
+        }
+        Map<SynchronizeFolderOperation, Pair<OCFile, Boolean>> runningFolders = new LinkedHashMap<>();
+        int foldersSinceCheckpoint = 0;
+        boolean interrupted = false;
+
+        mSubtreeSyncTracker = new SubtreeSyncTracker();
+        mUnchangedSubtreeFilter = new UnchangedSubtreeFilter(
+                folder -> getStorageManager().hasAvailableOfflineDescendants(folder)
+        );
+
+        ExecutorService executor = Executors.newFixedThreadPool(mMaxParallelFolderSyncs);
+        if (mFolderPrefetchDepth > 0) {
+            mFolderPrefetcher = new RemoteFolderPrefetcher(getClient(), mFolderPrefetchDepth);
+        }
+        CompletionService<Pair<SynchronizeFolderOperation, RemoteOperationResult>> completionService =
+                new ExecutorCompletionService<>(executor);
+        int runningSyncs = 0;
+        try {
+            do {
+                while (runningSyncs < mMaxParallelFolderSyncs && !pendingFolders.isEmpty() &&
+                        !mCancellation && !isTooMuchFailed()) {
+                    Pair<OCFile, Boolean> folder = pendingFolders.pop();
+                    SynchronizeFolderOperation synchFolderOp = createFolderSync(folder.first, !folder.second);
+                    completionService.submit(() -> {
+                        // failures are paired with their operation too, so it's always removed from runningFolders
+                        RemoteOperationResult result;
+                        try {
+                            result = synchFolderOp.execute(getClient(), getStorageManager());
+                        } catch (RuntimeException e) {
+                            Log_OC.e(TAG, "Unexpected error synchronizing folder " +
+                                    synchFolderOp.getRemotePath(), e);
+                            result = new RemoteOperationResult(e);
+                        }
+                        return new Pair<>(synchFolderOp, result);
+                    });
+                    runningFolders.put(synchFolderOp, folder);
+                    runningSyncs++;
+                }
+                if (runningSyncs == 0) {
+                    break;
+                }
+                prefetchPendingFolders(pendingFolders);
+
+                Pair<SynchronizeFolderOperation, RemoteOperationResult> finishedSync;
+                try {
+                    finishedSync = completionService.take().get();
+                } catch (ExecutionException e) {
+                    // only errors get here; exceptions are returned as failed results
+                    Log_OC.e(TAG, "Unexpected error synchronizing folder", e.getCause());
+                    mFailedResultsCounter++;
+                    continue;
+                } finally {
+                    runningSyncs--;
+                }
+                runningFolders.remove(finishedSync.first);
+                List<Pair<OCFile, Boolean>> children = mUnchangedSubtreeFilter.getFoldersToVisit(
+                        processFolderSyncResult(finishedSync.first, finishedSync.second)
+                );
+                // pushed in reverse order, so that they are synchronized in the same order than received
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pendingFolders.push(children.get(i));
+                }
+                if (++foldersSinceCheckpoint >= SYNC_FRONTIER_CHECKPOINT_INTERVAL) {
+                    saveSyncFrontier(runningFolders.values(), pendingFolders);
+                    foldersSinceCheckpoint = 0;
+                }
+            } while (true);
+
+        } catch (InterruptedException e) {
+            Log_OC.e(TAG, "Interrupted while synchronizing folders", e);
+            Thread.currentThread().interrupt();
+            interrupted = true;
+
+        } finally {
+            executor.shutdownNow();
+            if (mFolderPrefetcher != null) {
+                mFolderPrefetcher.shutdown();
+                Log_OC.d(TAG, "Folders prefetched: " + mFolderPrefetcher.getPrefetchesCount() +
+                        ", claimed: " + mFolderPrefetcher.getHitsCount());
+                mFolderPrefetcher = null;
+            }
+        }
+
+        Log_OC.d(TAG, "Unchanged folders skipped: " + mUnchangedSubtreeFilter.getSkippedCount());
+
+        if (mCancellation && !pendingFolders.isEmpty()) {
+            Log_OC.d(
+                TAG,
+                "Leaving synchronization before synchronizing " +
+                    pendingFolders.peek().first.getRemotePath() +
+                    " due to cancelation request"
+            );
+        }
+        boolean completed = pendingFolders.isEmpty() && !interrupted;
+        if (completed) {
+            getStorageManager().deleteSyncFrontier();
+        } else {
+            saveSyncFrontier(runningFolders.values(), pendingFolders);
+        }
+        return completed;
+    }
+
+    /**
+     *  Saves the folders pending in the synchronization, so that it can be resumed if interrupted.
+     *
+     *  @param runningFolders           Folders being synchronized; they will be synchronized again.
+     *  @param pendingFolders           Folders pending of synchronization, next one first.
+     */
+    private void saveSyncFrontier(Collection<Pair<OCFile, Boolean>> runningFolders,
+                                  Deque<Pair<OCFile, Boolean>> pendingFolders) {
+        List<Pair<OCFile, Boolean>> frontier = new ArrayList<>(runningFolders.size() + pendingFolders.size());
+        frontier.addAll(runningFolders);
+        frontier.addAll(pendingFolders);
+        getStorageManager().saveSyncFrontier(mCurrentSyncTime, frontier);
+    }
+
+    /**
+     *  Creates the operation to synchronize the list of files contained in a folder.
+     *
      *  @param folder                   Folder to synchronize.
      *  @param pushOnly                 When 'true', it's assumed that the folder did not change in the
      *                                  server, so data will not be fetched. Only local changes of
      *                                  available offline files will be pushed.
+     *  @return                         Operation to synchronize the folder, not started yet.
      */
-    private void synchronizeFolder(OCFile folder, boolean pushOnly) {
-        
-        if (mFailedResultsCounter > MAX_FAILED_RESULTS || isFinisher(mLastFailedResult))
-            return;
-        
-        // folder synchronization
+    private SynchronizeFolderOperation createFolderSync(OCFile folder, boolean pushOnly) {
         SynchronizeFolderOperation synchFolderOp = new SynchronizeFolderOperation(
             getContext(),
             folder.getRemotePath(),
@@ -276,23 +562,50 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
             true,       // sync full account
             false       // only sync contents of available offline files
         );
+        synchFolderOp.setDatabaseWriteLock(mDatabaseWriteLock);
+        synchFolderOp.setRemoteFolderPrefetcher(mFolderPrefetcher);
+        return synchFolderOp;
+    }
 
-        RemoteOperationResult result;
-        boolean repeat;
-        int repeatCounter = 0;
-        do {
-            repeat = false;
-
-            result = synchFolderOp.execute(getClient(), getStorageManager());
-
-        } while (repeat);
+    /**
+     *  Starts fetching the list of files in the next folders to synchronize, if they changed in the server,
+     *  while the folders in progress are synchronized.
+     *
+     *  @param pendingFolders           Folders pending of synchronization, next one first.
+     */
+    private void prefetchPendingFolders(Deque<Pair<OCFile, Boolean>> pendingFolders) {
+        if (mFolderPrefetcher == null) {
+            return;
+        }
+        int checkedFolders = 0;
+        for (Pair<OCFile, Boolean> folder : pendingFolders) {
+            if (checkedFolders++ >= mFolderPrefetchDepth) {
+                break;
+            }
+            if (folder.second) {
+                // only changed folders are fetched; push-only synchronizations don't read the server
+                mFolderPrefetcher.prefetch(folder.first.getRemotePath());
+            }
+        }
+    }
 
+    /**
+     *  Updates the statistics of the synchronization with the result of a finished folder synchronization.
+     *
+     *  @param synchFolderOp            Finished folder synchronization.
+     *  @param result                   Result of the folder synchronization.
+     *  @return                         Subfolders of the synchronized folder, with boolean value signaling if
+     *                                  there are pending changes to sync in the server; empty if the
+     *                                  synchronization failed.
+     */
+    private List<Pair<OCFile, Boolean>> processFolderSyncResult(SynchronizeFolderOperation synchFolderOp,
+                                                                RemoteOperationResult result) {
         // synchronized folder -> notice to UI - ALWAYS, although !result.isSuccess
-        sendLocalBroadcast(EVENT_FULL_SYNC_FOLDER_CONTENTS_SYNCED, folder.getRemotePath(), result);
-        
+        sendLocalBroadcast(EVENT_FULL_SYNC_FOLDER_CONTENTS_SYNCED, synchFolderOp.getRemotePath(), result);
+
         // check the result of synchronizing the folder
         if (result.isSuccess() || result.getCode() == ResultCode.SYNC_CONFLICT) {
-            
+
             if (result.getCode() == ResultCode.SYNC_CONFLICT) {
                 mConflictsFound += synchFolderOp.getConflictsFound();
                 mFailsInFavouritesFound += synchFolderOp.getFailsInFileSyncsFound();
@@ -301,30 +614,65 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
                 mForgottenLocalFiles.putAll(synchFolderOp.getForgottenLocalFiles());
             }
             if (result.isSuccess()) {
-                // synchronize children folders 
-                List<Pair<OCFile, Boolean>> children = synchFolderOp.getFoldersToVisit();
-                // beware of the 'hidden' recursion here!
-                syncSubfolders(children);
+                if (!synchFolderOp.isPushOnly()) {
+                    List<String> changedSubfolders = new ArrayList<>();
+                    for (Pair<OCFile, Boolean> child : synchFolderOp.getFoldersToVisit()) {
+                        if (child.first.isFolder() && child.second) {
+                            changedSubfolders.add(child.first.getRemotePath());
+                        }
+                    }
+                    saveSynchronizedSubtrees(mSubtreeSyncTracker.onFolderSynchronized(
+                            synchFolderOp.getRemotePath(),
+                            synchFolderOp.getMergedEtag(),
+                            changedSubfolders
+                    ));
+                }
+                // children folders to synchronize next
+                return synchFolderOp.getFoldersToVisit();
             }
-            
+
         } else if (result.getCode() != ResultCode.FILE_NOT_FOUND) {
             // in failures, the statistics for the global result are updated
             if (RemoteOperationResult.ResultCode.UNAUTHORIZED.equals(result.getCode())) {
                 mSyncResult.stats.numAuthExceptions++;
-                
+
             } else if (result.getException() instanceof DavException) {
                 mSyncResult.stats.numParseExceptions++;
-                
-            } else if (result.getException() instanceof IOException) { 
+
+            } else if (result.getException() instanceof IOException) {
                 mSyncResult.stats.numIoExceptions++;
             }
             mFailedResultsCounter++;
             mLastFailedResult = result;
 
-        } // else, ResultCode.FILE_NOT_FOUND is ignored, remote folder was
-          // removed from other thread or other client during the synchronization,
-          // before this thread fetched its contents
-            
+        } else {
+            // ResultCode.FILE_NOT_FOUND is ignored, remote folder was
+            // removed from other thread or other client during the synchronization,
+            // before this thread fetched its contents
+            saveSynchronizedSubtrees(mSubtreeSyncTracker.onFolderRemoved(synchFolderOp.getRemotePath()));
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     *  Sets the tree ETags of folders which subtrees were completely synchronized.
+     *
+     *  @param folders                  Remote paths of the folders, with their ETags when merged.
+     */
+    private void saveSynchronizedSubtrees(List<Pair<String, String>> folders) {
+        for (Pair<String, String> folder : folders) {
+            synchronized (mDatabaseWriteLock) {
+                getStorageManager().saveTreeEtagAsSynchronized(folder.first, folder.second);
+            }
+        }
+    }
+
+    /**
+     * @return      'True' if the synchronization failed too much to go on synchronizing more folders.
+     */
+    private boolean isTooMuchFailed() {
+        return mFailedResultsCounter > MAX_FAILED_RESULTS || isFinisher(mLastFailedResult);
     }
 
     /**
@@ -349,38 +697,6 @@ public class FileSyncAdapter extends AbstractOwnCloudSyncAdapter {
         return false;
     }
 
-    /**
-     * Triggers the synchronization of any folder contained in the list of received files.
-     *
-     * Every subfolder comes with a boolean flag, set to true if the previous sync operation detected
-     * that there are pending changes in the file.
-     *
-     * Only folders that have pending changes in the server will be sync'd here.
-     *
-     * @param folders       Subfolders to recursively synchronize, with boolean value signaling if there are pending
-     *                      changes to sync in the server.
-     */
-    private void syncSubfolders(List<Pair<OCFile, Boolean>> folders) {
-        int i;
-        Pair<OCFile, Boolean> pair;
-        for (i=0; i < folders.size() && !mCancellation; i++) {
-            pair = folders.get(i);
-            if (pair.first.isFolder()) {
-                synchronizeFolder(pair.first, !pair.second);
-            }
-        }
-       
-        if (mCancellation && i <folders.size()) {
-            Log_OC.d(
-                TAG,
-                "Leaving synchronization before synchronizing " +
-                    folders.get(i).first.getRemotePath() +
-                    " due to cancelation request"
-            );
-        }
-    }
-
-    
     /**
      * Sends a message to any application component interested in the progress of the
      * synchronization.
@@ -0,0 +1,107 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import androidx.core.util.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the folders fetched during a full account synchronization, to know when all the
+ * subtree of a folder is synchronized.
+ *
+ * The subtree of a fetched folder is synchronized when all its subfolders that changed in the server
+ * are synchronized with their subtrees; subfolders that didn't change are already synchronized. A folder
+ * which subfolders failed to synchronize is never completed.
+ *
+ * Not thread safe; must be used only from the thread driving the synchronization.
+ */
+class SubtreeSyncTracker {
+
+    /** Number of changed subfolders pending of synchronization in every fetched folder */
+    private final Map<String, Integer> mPendingSubfolders = new HashMap<>();
+
+    /** Parent of every changed subfolder pending of synchronization */
+    private final Map<String, String> mParents = new HashMap<>();
+
+    /** ETag of every fetched folder with changed subfolders pending of synchronization, when merged */
+    private final Map<String, String> mMergedEtags = new HashMap<>();
+
+    /**
+     * Registers that a folder was fetched and merged.
+     *
+     * @param remotePath            Remote path of the fetched folder.
+     * @param mergedEtag            ETag of the fetched folder when merged.
+     * @param changedSubfolders     Remote paths of the subfolders of the folder that changed in the server,
+     *                              and will be synchronized.
+     * @return                      Remote paths of the ancestors which subtrees are completely synchronized
+     *                              now, from bottom to top, with their ETags when merged; the subtree of the
+     *                              fetched folder is completed when it has no changed subfolders, but it's
+     *                              not included.
+     */
+    List<Pair<String, String>> onFolderSynchronized(
+            String remotePath,
+            String mergedEtag,
+            List<String> changedSubfolders
+    ) {
+        List<Pair<String, String>> completed = new ArrayList<>();
+        if (changedSubfolders.isEmpty()) {
+            completeAncestorsOf(remotePath, completed);
+        } else {
+            mPendingSubfolders.put(remotePath, changedSubfolders.size());
+            mMergedEtags.put(remotePath, mergedEtag);
+            for (String subfolder : changedSubfolders) {
+                mParents.put(subfolder, remotePath);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Registers that a folder was removed in the server before fetching it, so it doesn't prevent
+     * completing its parent anymore.
+     *
+     * @param remotePath            Remote path of the removed folder.
+     * @return                      Remote paths of the ancestors completed by the removal, from bottom to top,
+     *                              with their ETags when merged.
+     */
+    List<Pair<String, String>> onFolderRemoved(String remotePath) {
+        List<Pair<String, String>> completed = new ArrayList<>();
+        completeAncestorsOf(remotePath, completed);
+        return completed;
+    }
+
+    private void completeAncestorsOf(String remotePath, List<Pair<String, String>> completed) {
+        String parent = mParents.remove(remotePath);
+        while (parent != null) {
+            int pending = mPendingSubfolders.get(parent) - 1;
+            if (pending > 0) {
+                mPendingSubfolders.put(parent, pending);
+                return;
+            }
+            mPendingSubfolders.remove(parent);
+            completed.add(new Pair<>(parent, mMergedEtags.remove(parent)));
+            parent = mParents.remove(parent);
+        }
+    }
+}
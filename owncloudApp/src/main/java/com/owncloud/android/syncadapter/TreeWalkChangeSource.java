@@ -0,0 +1,42 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the changes in the server walking all the tree of folders of the account from the root folder,
+ * pruning subtrees with unchanged tree ETags.
+ */
+class TreeWalkChangeSource implements ChangeSource {
+
+    @Override
+    public List<String> getChangedFolders() {
+        return Collections.singletonList(OCFile.ROOT_PATH);
+    }
+
+    @Override
+    public void onSynchronizationFinished(boolean completed) {
+        // nothing to keep; next walk starts at the root again
+    }
+}
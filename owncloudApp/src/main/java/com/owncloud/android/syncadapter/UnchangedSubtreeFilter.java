@@ -0,0 +1,103 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import androidx.core.util.Pair;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which subfolders of a fetched folder must be visited in a full account synchronization.
+ *
+ * Subfolders that didn't change in the server since their subtrees were completely synchronized, as told
+ * by their tree ETags, are skipped unless they contain available offline files which local changes need
+ * to be pushed.
+ *
+ * Not thread safe; must be used only from the thread driving the synchronization.
+ */
+class UnchangedSubtreeFilter {
+
+    /**
+     * Source of the available offline status of the descendants of a folder.
+     */
+    interface AvailableOfflineChecker {
+
+        /**
+         * @param folder    Folder to check.
+         * @return          'true' if any descendant of the folder is available offline.
+         */
+        boolean hasAvailableOfflineDescendants(OCFile folder);
+    }
+
+    private final AvailableOfflineChecker mAvailableOfflineChecker;
+
+    /** Number of unchanged subfolders skipped */
+    private int mSkippedCount = 0;
+
+    UnchangedSubtreeFilter(AvailableOfflineChecker availableOfflineChecker) {
+        mAvailableOfflineChecker = availableOfflineChecker;
+    }
+
+    /**
+     * Gets the subfolders to visit among the children of a fetched folder.
+     *
+     * @param children      Children of the folder, with boolean values signaling if there are pending
+     *                      changes to sync in the server.
+     * @return              Children that are folders and can't be skipped, in the same order.
+     */
+    List<Pair<OCFile, Boolean>> getFoldersToVisit(List<Pair<OCFile, Boolean>> children) {
+        List<Pair<OCFile, Boolean>> foldersToVisit = new ArrayList<>();
+        for (Pair<OCFile, Boolean> child : children) {
+            if (child.first.isFolder() && !canSkip(child)) {
+                foldersToVisit.add(child);
+            }
+        }
+        return foldersToVisit;
+    }
+
+    /**
+     * Checks if a subfolder can be skipped in the synchronization.
+     *
+     * @param folder        Subfolder, with boolean value signaling if there are pending changes to sync in
+     *                      the server.
+     * @return              'true' if the folder didn't change in the server since its subtree was
+     *                      synchronized, and there are no available offline files in it.
+     */
+    private boolean canSkip(Pair<OCFile, Boolean> folder) {
+        if (folder.second || folder.first.isAvailableOffline()) {
+            return false;
+        }
+        boolean skip = !mAvailableOfflineChecker.hasAvailableOfflineDescendants(folder.first);
+        if (skip) {
+            mSkippedCount++;
+        }
+        return skip;
+    }
+
+    /**
+     * @return  Number of unchanged subfolders skipped.
+     */
+    int getSkippedCount() {
+        return mSkippedCount;
+    }
+}
@@ -89,6 +89,7 @@ import com.owncloud.android.ui.fragment.FileFragment;
 import com.owncloud.android.ui.fragment.OCFileListFragment;
 import com.owncloud.android.ui.fragment.TaskRetainerFragment;
 import com.owncloud.android.ui.helpers.FilesUploadHelper;
+import com.owncloud.android.ui.helpers.FolderRefreshScheduler;
 import com.owncloud.android.ui.helpers.UriUploader;
 import com.owncloud.android.ui.preview.PreviewAudioFragment;
 import com.owncloud.android.ui.preview.PreviewImageActivity;
@@ -149,6 +150,23 @@ public class FileDisplayActivity extends FileActivity
 
     private boolean mSyncInProgress = false;
 
+    /**
+     * Merges the refreshes of the list of files requested by sync, upload and download broadcasts
+     */
+    private final FolderRefreshScheduler mRefreshScheduler =
+            new FolderRefreshScheduler(new FolderRefreshScheduler.RefreshTarget() {
+                @Override
+                public String getVisibleFolderPath() {
+                    OCFile currentDir = getCurrentDir();
+                    return (currentDir != null) ? currentDir.getRemotePath() : null;
+                }
+
+                @Override
+                public void refreshVisibleFolder() {
+                    refreshListOfFilesFragment(true);
+                }
+            });
+
     private OCFile mWaitingToSend;
 
     private LocalBroadcastManager mLocalBroadcastManager;
@@ -961,6 +979,7 @@ public class FileDisplayActivity extends FileActivity
             mLocalBroadcastManager.unregisterReceiver(mDownloadBroadcastReceiver);
             mDownloadBroadcastReceiver = null;
         }
+        mRefreshScheduler.cancel();    // list is refreshed in onResume()
 
         super.onPause();
         Log_OC.v(TAG, "onPause() end");
@@ -1020,16 +1039,8 @@ public class FileDisplayActivity extends FileActivity
                             currentFile = currentDir;
                         }
 
-                        if (synchFolderRemotePath != null &&
-                                currentDir.getRemotePath().equals(synchFolderRemotePath)) {
-                            OCFileListFragment fileListFragment = getListOfFilesFragment();
-                            if (fileListFragment != null) {
-                                fileListFragment.listDirectory(true);
-                                // TODO Enable when "On Device" is recovered ?
-                                // fileListFragment.listDirectory(currentDir,
-                                // MainApp.getOnlyOnDevice());
-                            }
-                        }
+                        // refreshed only if still visible when the refresh is done
+                        mRefreshScheduler.requestRefresh(synchFolderRemotePath);
                         setFile(currentFile);
                     }
 
@@ -1159,7 +1170,7 @@ public class FileDisplayActivity extends FileActivity
                 String linkedToRemotePath =
                         intent.getStringExtra(Extras.EXTRA_LINKED_TO_PATH);
                 if (linkedToRemotePath == null || isAscendant(linkedToRemotePath)) {
-                    refreshListOfFilesFragment(true);
+                    mRefreshScheduler.requestRefresh(getCurrentDir().getRemotePath());
                 }
             }
 
@@ -1247,7 +1258,7 @@ public class FileDisplayActivity extends FileActivity
                 String linkedToRemotePath =
                         intent.getStringExtra(Extras.EXTRA_LINKED_TO_PATH);
                 if (linkedToRemotePath == null || isAscendant(linkedToRemotePath)) {
-                    refreshListOfFilesFragment(true);
+                    mRefreshScheduler.requestRefresh(getCurrentDir().getRemotePath());
                 }
                 refreshSecondFragment(
                         intent.getAction(),
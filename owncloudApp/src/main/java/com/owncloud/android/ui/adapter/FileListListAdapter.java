@@ -30,6 +30,10 @@ import android.accounts.Account;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -42,6 +46,8 @@ import android.widget.LinearLayout;
 import android.widget.ListAdapter;
 import android.widget.TextView;
 
+import androidx.core.util.Pair;
+
 import com.owncloud.android.R;
 import com.owncloud.android.authentication.AccountUtils;
 import com.owncloud.android.datamodel.FileDataStorageManager;
@@ -58,8 +64,11 @@ import com.owncloud.android.utils.MimetypeIconUtil;
 import com.owncloud.android.utils.PreferenceUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -68,11 +77,34 @@ import java.util.Vector;
  */
 public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
+    /**
+     * Folders with more files than this are adapted in pages loaded from the database on demand, instead
+     * of loading all their content in memory. Pages are sorted by the database, where names are compared
+     * ignoring case but without the natural ordering of numbers of {@link FileStorageUtils#sortFolder}.
+     */
+    private static final int PAGED_LISTING_THRESHOLD = 1000;
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES_IN_MEMORY = 10;
+
     private Context mContext;
     private Vector<OCFile> mImmutableFilesList = null; // List containing the database files, doesn't change with search
     private Vector<OCFile> mFiles = null; // List that can be changed when using search
     private boolean mJustFolders;
 
+    private OCFile mPagedFolder = null; // Folder adapted in pages; null when its content is in mFiles
+    private int mPagedCount = 0;
+    private String mPagedNameFilter = null;
+    private final LruCache<Integer, Vector<OCFile>> mPages = new LruCache<>(MAX_PAGES_IN_MEMORY);
+    private final Set<Integer> mPagesLoading = new HashSet<>();
+    private final SparseArray<OCFile> mPagesLastFiles = new SparseArray<>();  // kept after pages are evicted
+    private int mPagesGeneration = 0;   // increased when loaded pages become outdated, to discard pages in flight
+
+    private int mFoldersCount = 0;
+    private int mFilesCount = 0;
+
+    private final Executor mListingExecutor;   // background thread where pages are loaded
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
     private FileDataStorageManager mStorageManager;
     private Account mAccount;
     private ComponentsGetter mTransferServiceGetter;
@@ -82,10 +114,12 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
     public FileListListAdapter(
             boolean justFolders,
             Context context,
-            ComponentsGetter transferServiceGetter
+            ComponentsGetter transferServiceGetter,
+            Executor listingExecutor
     ) {
 
         mJustFolders = justFolders;
+        mListingExecutor = listingExecutor;
         mContext = context;
         mAccount = AccountUtils.getCurrentOwnCloudAccount(mContext);
 
@@ -111,11 +145,17 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
     @Override
     public int getCount() {
+        if (mPagedFolder != null) {
+            return mPagedCount;
+        }
         return mFiles != null ? mFiles.size() : 0;
     }
 
     @Override
     public Object getItem(int position) {
+        if (mPagedFolder != null) {
+            return getPagedItem(position);
+        }
         if (mFiles == null || mFiles.size() <= position)
             return null;
         return mFiles.get(position);
@@ -123,9 +163,113 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
     @Override
     public long getItemId(int position) {
-        if (mFiles == null || mFiles.size() <= position)
+        if (mPagedFolder != null) {
+            return position;    // files may not be loaded yet; ids are not stable in pages
+        }
+        OCFile file = (OCFile) getItem(position);
+        if (file == null)
             return 0;
-        return mFiles.get(position).getFileId();
+        return file.getFileId();
+    }
+
+    /**
+     * Gets a file of the folder adapted in pages.
+     *
+     * If the page of the file is not in memory, starts loading it in background and returns null; the
+     * adapter is notified when the page is loaded.
+     *
+     * @param position  Position of the file in the adapted folder.
+     * @return          File in the given position, or null if out of bounds or not loaded yet.
+     */
+    private OCFile getPagedItem(int position) {
+        if (position < 0 || position >= mPagedCount) {
+            return null;
+        }
+        int pageIndex = position / PAGE_SIZE;
+        Vector<OCFile> page = mPages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        int positionInPage = position % PAGE_SIZE;
+        return (positionInPage < page.size()) ? page.get(positionInPage) : null;
+    }
+
+    /**
+     * Loads a page of the folder adapted in pages in the listing executor, unless it's already loading.
+     *
+     * The page starts right after the last file of the previous page when it was loaded before, so that
+     * files inserted or removed by a synchronization of the folder don't make contiguous pages overlap or
+     * leave gaps between them.
+     *
+     * @param pageIndex     Index of the page to load.
+     */
+    private void loadPage(final int pageIndex) {
+        if (!mPagesLoading.add(pageIndex)) {
+            return;
+        }
+        final int generation = mPagesGeneration;
+        final FileDataStorageManager storageManager = mStorageManager;
+        final OCFile folder = mPagedFolder;
+        final String nameFilter = mPagedNameFilter;
+        final int sortOrder = FileStorageUtils.mSortOrderFileDisp;
+        final boolean ascending = FileStorageUtils.mSortAscendingFileDisp;
+        final OCFile afterFile = (pageIndex > 0) ? mPagesLastFiles.get(pageIndex - 1) : null;
+        mListingExecutor.execute(() -> {
+            final Vector<OCFile> page = storageManager.getFolderContentPage(
+                    folder,
+                    nameFilter,
+                    sortOrder,
+                    ascending,
+                    afterFile,
+                    pageIndex * PAGE_SIZE,
+                    PAGE_SIZE
+            );
+            mMainHandler.post(() -> {
+                if (generation != mPagesGeneration) {
+                    return; // outdated
+                }
+                mPagesLoading.remove(pageIndex);
+                mPages.put(pageIndex, page);
+                if (!page.isEmpty()) {
+                    mPagesLastFiles.put(pageIndex, page.lastElement());
+                }
+                notifyDataSetChanged();
+            });
+        });
+    }
+
+    /**
+     * Discards the pages loaded or loading of the folder adapted in pages.
+     */
+    private void invalidatePages() {
+        mPagesGeneration++;
+        mPagesLoading.clear();
+        mPages.evictAll();
+        mPagesLastFiles.clear();
+    }
+
+    /**
+     * Counts again in the listing executor the files of the folder adapted in pages matching the current
+     * filter, and discards the pages loaded.
+     */
+    private void reloadPagedCount() {
+        invalidatePages();
+        final int generation = mPagesGeneration;
+        final FileDataStorageManager storageManager = mStorageManager;
+        final OCFile folder = mPagedFolder;
+        final String nameFilter = mPagedNameFilter;
+        mListingExecutor.execute(() -> {
+            final int count = storageManager.getFolderContentCount(folder, nameFilter);
+            mMainHandler.post(() -> {
+                if (generation != mPagesGeneration) {
+                    return; // outdated
+                }
+                mPagedCount = count;
+                notifyDataSetChanged();
+            });
+        });
+        notifyDataSetChanged();
     }
 
     @Override
@@ -141,9 +285,7 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
         LayoutInflater inflator = (LayoutInflater) mContext
                 .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 
-        if (mFiles != null && mFiles.size() > position) {
-            file = mFiles.get(position);
-        }
+        file = (OCFile) getItem(position);
 
         // Find out which layout should be displayed
         final ViewType viewType;
@@ -307,10 +449,34 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
 
             }
+        } else {
+            showPlaceholder(view, viewType);
         }
         return view;
     }
 
+    /**
+     * Clears a view, maybe recycled, to show a file which page is still loading.
+     *
+     * @param view          View to clear.
+     * @param viewType      Type of the view.
+     */
+    private void showPlaceholder(View view, ViewType viewType) {
+        ((ImageView) view.findViewById(R.id.thumbnail)).setImageDrawable(null);
+        view.findViewById(R.id.localFileIndicator).setVisibility(View.INVISIBLE);
+        view.findViewById(R.id.custom_checkbox).setVisibility(View.GONE);
+        view.findViewById(R.id.sharedIcon).setVisibility(View.GONE);
+        if (viewType == ViewType.LIST_ITEM) {
+            view.findViewById(R.id.file_size).setVisibility(View.INVISIBLE);
+            view.findViewById(R.id.file_separator).setVisibility(View.INVISIBLE);
+            view.findViewById(R.id.last_mod).setVisibility(View.INVISIBLE);
+        }
+        if (viewType != ViewType.GRID_IMAGE) {
+            ((TextView) view.findViewById(R.id.Filename)).setText("");
+        }
+        view.setBackgroundColor(Color.WHITE);
+    }
+
     private void setIconPinAcordingToFilesLocalState(ImageView localStateView, OCFile file) {
         // local state
         localStateView.bringToFront();
@@ -359,11 +525,14 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
     @Override
     public boolean hasStableIds() {
-        return true;
+        return (mPagedFolder == null);
     }
 
     @Override
     public boolean isEmpty() {
+        if (mPagedFolder != null) {
+            return mPagedCount == 0;
+        }
         return (mFiles == null || mFiles.isEmpty());
     }
 
@@ -377,28 +546,136 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
      */
     public void swapDirectory(OCFile folder, FileDataStorageManager updatedStorageManager
             /*, boolean onlyOnDevice*/) {
-        if (updatedStorageManager != null && updatedStorageManager != mStorageManager) {
-            mStorageManager = updatedStorageManager;
-            mAccount = AccountUtils.getCurrentOwnCloudAccount(mContext);
+        swapDirectory(
+                loadDirectory(
+                        folder,
+                        (updatedStorageManager != null) ? updatedStorageManager : mStorageManager
+                )
+        );
+    }
+
+    /**
+     * Loads and sorts the content of a folder to adapt, without changing the adapted directory.
+     *
+     * Doesn't access the state of the adapter, so can be called from a background thread; the result
+     * must be passed to {@link #swapDirectory(DirectoryListing)} in the main thread.
+     *
+     * @param folder            Folder to load. Can be NULL, meaning "no content to adapt".
+     * @param storageManager    Storage manager to load the folder from.
+     * @return                  Loaded content of the folder.
+     */
+    public DirectoryListing loadDirectory(OCFile folder, FileDataStorageManager storageManager) {
+        if (storageManager == null) {
+            return new DirectoryListing(folder, null, null, 0, new Pair<>(0, 0));
         }
 
-        if (mStorageManager != null) {
-            // TODO Enable when "On Device" is recovered ?
-            mImmutableFilesList = mStorageManager.getFolderContent(folder/*, onlyOnDevice*/);
+        if (!mJustFolders) {
+            int count = storageManager.getFolderContentCount(folder, null);
+            if (count > PAGED_LISTING_THRESHOLD) {
+                // too big to keep in memory; files will be loaded in pages, sorted by the database
+                return new DirectoryListing(
+                        folder,
+                        storageManager,
+                        null,
+                        count,
+                        storageManager.getFolderContentCountsByType(folder)
+                );
+            }
+        }
 
-            mFiles = mImmutableFilesList;
+        // TODO Enable when "On Device" is recovered ?
+        Vector<OCFile> files = storageManager.getFolderContent(folder/*, onlyOnDevice*/);
+        if (mJustFolders) {
+            files = getFolders(files);
+        }
+        files = FileStorageUtils.sortFolder(
+                files,
+                FileStorageUtils.mSortOrderFileDisp,
+                FileStorageUtils.mSortAscendingFileDisp
+        );
+        return new DirectoryListing(folder, storageManager, files, files.size(), countFoldersAndFiles(files));
+    }
 
-            if (mJustFolders) {
-                mFiles = getFolders(mFiles);
+    /**
+     * Counts the folders and the non hidden files in a list of files.
+     *
+     * @param files     Files to count.
+     * @return          Number of folders and number of non hidden files.
+     */
+    private static Pair<Integer, Integer> countFoldersAndFiles(List<OCFile> files) {
+        int foldersCount = 0, filesCount = 0;
+        for (OCFile file : files) {
+            if (file.isFolder()) {
+                foldersCount++;
+            } else {
+                if (!file.isHidden()) {
+                    filesCount++;
+                }
             }
-        } else {
-            mFiles = null;
         }
+        return new Pair<>(foldersCount, filesCount);
+    }
 
-        mFiles = FileStorageUtils.sortFolder(mFiles,FileStorageUtils.mSortOrderFileDisp,FileStorageUtils.mSortAscendingFileDisp);
+    /**
+     * Change the adapted directory for a new one, already loaded with
+     * {@link #loadDirectory(OCFile, FileDataStorageManager)}.
+     *
+     * @param listing   Loaded content of the new folder to adapt.
+     */
+    public void swapDirectory(DirectoryListing listing) {
+        if (listing.mStorageManager != null && listing.mStorageManager != mStorageManager) {
+            mStorageManager = listing.mStorageManager;
+            mAccount = AccountUtils.getCurrentOwnCloudAccount(mContext);
+        }
+
+        mPagedFolder = null;
+        mPagedNameFilter = null;
+        invalidatePages();
+        mFoldersCount = listing.mFoldersAndFilesCount.first;
+        mFilesCount = listing.mFoldersAndFilesCount.second;
+
+        if (listing.isPaged()) {
+            mPagedFolder = listing.mFolder;
+            mPagedCount = listing.mCount;
+            mImmutableFilesList = null;
+            mFiles = null;
+
+        } else {
+            mImmutableFilesList = listing.mFiles;
+            mFiles = listing.mFiles;
+        }
         notifyDataSetChanged();
     }
 
+    /**
+     * Content of a folder loaded to be adapted.
+     */
+    public static class DirectoryListing {
+        private final OCFile mFolder;
+        private final FileDataStorageManager mStorageManager;
+        private final Vector<OCFile> mFiles;    // sorted content; null if paged or not loaded
+        private final int mCount;
+        private final Pair<Integer, Integer> mFoldersAndFilesCount;     // folders and non hidden files
+
+        private DirectoryListing(
+                OCFile folder,
+                FileDataStorageManager storageManager,
+                Vector<OCFile> files,
+                int count,
+                Pair<Integer, Integer> foldersAndFilesCount
+        ) {
+            mFolder = folder;
+            mStorageManager = storageManager;
+            mFiles = files;
+            mCount = count;
+            mFoldersAndFilesCount = foldersAndFilesCount;
+        }
+
+        private boolean isPaged() {
+            return (mStorageManager != null && mFiles == null);
+        }
+    }
+
     /**
      * Filter for getting only the folders
      *
@@ -426,26 +703,119 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
         FileStorageUtils.mSortOrderFileDisp = order;
         FileStorageUtils.mSortAscendingFileDisp = ascending;
 
+        if (mPagedFolder != null) {
+            invalidatePages();
+            notifyDataSetChanged();
+            return;
+        }
+
         mFiles = FileStorageUtils.sortFolder(mFiles,FileStorageUtils.mSortOrderFileDisp,FileStorageUtils.mSortAscendingFileDisp);
         notifyDataSetChanged();
     }
 
-    public ArrayList<OCFile> getCheckedItems(AbsListView parentList) {
+    /**
+     * Gets the files checked in a list showing the adapted directory.
+     *
+     * Files of a folder adapted in pages that are not in memory are loaded from the database in the
+     * listing executor, a page at a time, without changing the pages shown; the listener is called in the
+     * main thread when all of them are loaded. Otherwise, the listener is called before returning.
+     *
+     * @param parentList    List showing the adapted directory.
+     * @param listener      Listener to receive the checked files, in the order they are listed.
+     */
+    public void getCheckedItems(AbsListView parentList, final CheckedItemsListener listener) {
         SparseBooleanArray checkedPositions = parentList.getCheckedItemPositions();
-        ArrayList<OCFile> files = new ArrayList<>();
-        Object item;
+        final List<Integer> positions = new ArrayList<>();
         for (int i = 0; i < checkedPositions.size(); i++) {
             if (checkedPositions.valueAt(i)) {
-                item = getItem(checkedPositions.keyAt(i));
-                if (item != null) {
-                    files.add((OCFile) item);
+                positions.add(checkedPositions.keyAt(i));
+            }
+        }
+
+        final OCFile[] checkedFiles = new OCFile[positions.size()];
+        final SparseArray<OCFile> missingPages = new SparseArray<>();  // last file of the previous page
+        for (int i = 0; i < positions.size(); i++) {
+            int position = positions.get(i);
+            if (mPagedFolder == null) {
+                if (mFiles != null && position < mFiles.size()) {
+                    checkedFiles[i] = mFiles.get(position);
                 }
+                continue;
+            }
+            int pageIndex = position / PAGE_SIZE;
+            Vector<OCFile> page = mPages.get(pageIndex);
+            if (page == null) {
+                missingPages.put(pageIndex, (pageIndex > 0) ? mPagesLastFiles.get(pageIndex - 1) : null);
+            } else if (position % PAGE_SIZE < page.size()) {
+                checkedFiles[i] = page.get(position % PAGE_SIZE);
+            }
+        }
+        if (missingPages.size() == 0) {
+            listener.onCheckedItemsLoaded(toCheckedItemsList(checkedFiles));
+            return;
+        }
+
+        final FileDataStorageManager storageManager = mStorageManager;
+        final OCFile folder = mPagedFolder;
+        final String nameFilter = mPagedNameFilter;
+        final int sortOrder = FileStorageUtils.mSortOrderFileDisp;
+        final boolean ascending = FileStorageUtils.mSortAscendingFileDisp;
+        mListingExecutor.execute(() -> {
+            for (int i = 0; i < missingPages.size(); i++) {
+                int pageIndex = missingPages.keyAt(i);
+                Vector<OCFile> page = storageManager.getFolderContentPage(
+                        folder,
+                        nameFilter,
+                        sortOrder,
+                        ascending,
+                        missingPages.valueAt(i),
+                        pageIndex * PAGE_SIZE,
+                        PAGE_SIZE
+                );
+                for (int j = 0; j < positions.size(); j++) {
+                    int position = positions.get(j);
+                    if (position / PAGE_SIZE == pageIndex && position % PAGE_SIZE < page.size()) {
+                        checkedFiles[j] = page.get(position % PAGE_SIZE);
+                    }
+                }
+            }
+            mMainHandler.post(() -> listener.onCheckedItemsLoaded(toCheckedItemsList(checkedFiles)));
+        });
+    }
+
+    private static ArrayList<OCFile> toCheckedItemsList(OCFile[] checkedFiles) {
+        ArrayList<OCFile> files = new ArrayList<>();
+        for (OCFile file : checkedFiles) {
+            if (file != null) {
+                files.add(file);
             }
         }
         return files;
     }
 
+    /**
+     * Listener interface to receive the files checked in a list showing the adapted directory.
+     */
+    public interface CheckedItemsListener {
+        void onCheckedItemsLoaded(ArrayList<OCFile> checkedFiles);
+    }
+
+    /**
+     * Counts the folders and the non hidden files in the adapted directory, as counted when it was loaded.
+     *
+     * @return  Number of folders and number of non hidden files.
+     */
+    public Pair<Integer, Integer> getFoldersAndFilesCount() {
+        return new Pair<>(mFoldersCount, mFilesCount);
+    }
+
     public void filterBySearch(String query) {
+        if (mPagedFolder != null) {
+            mPagedNameFilter = query;
+            reloadPagedCount();
+            return;
+        }
+
         query = query.toLowerCase();
 
         clearFilterBySearch();
@@ -478,6 +848,15 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
     }
 
     public void clearFilterBySearch() {
+        if (mPagedFolder != null) {
+            if (mPagedNameFilter != null) {
+                mPagedNameFilter = null;
+                reloadPagedCount();
+            } else {
+                notifyDataSetChanged();
+            }
+            return;
+        }
         mFiles = (Vector<OCFile>) mImmutableFilesList.clone();
         notifyDataSetChanged();
     }
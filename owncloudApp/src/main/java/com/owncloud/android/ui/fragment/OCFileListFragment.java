@@ -32,6 +32,7 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.preference.PreferenceManager;
 import android.util.SparseBooleanArray;
@@ -83,9 +84,13 @@ import com.owncloud.android.utils.PreferenceUtils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.appcompat.widget.SearchView;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
+import androidx.core.util.Pair;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
@@ -117,6 +122,19 @@ public class OCFileListFragment extends ExtendedListFragment implements
     private OCFile mFile = null;
     private FileListListAdapter mFileListAdapter;
 
+    /**
+     * Background thread where the content of folders is loaded and sorted; shared by all the instances,
+     * so that listings are loaded one after another.
+     */
+    private static final ExecutorService sListingExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Last listing requested; older requests not started yet are skipped, and their results discarded */
+    private final AtomicInteger mLastListingRequest = new AtomicInteger(0);
+
+    private boolean mResetSelectionOnNextListing = false;
+
     private boolean mEnableSelectAll = true;
 
     private int mStatusBarColorActionMode;
@@ -224,7 +242,8 @@ public class OCFileListFragment extends ExtendedListFragment implements
         mFileListAdapter = new FileListListAdapter(
                 justFolders,
                 getActivity(),
-                mContainerActivity
+                mContainerActivity,
+                sListingExecutor
         );
         setListAdapter(mFileListAdapter);
 
@@ -450,7 +469,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
     }
 
     public boolean isSingleItemChecked(){
-        return mFileListAdapter.getCheckedItems(getListView()).size() == 1;
+        return getListView().getCheckedItemCount() == 1;
     }
 
     /**
@@ -531,7 +550,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
         public void onItemCheckedStateChanged(ActionMode mode, int position, long id, boolean checked) {
             getListView().invalidateViews();
             mode.invalidate();
-            if(mFileListAdapter.getCheckedItems(getListView()).size() == mFileListAdapter.getCount()){
+            if(getListView().getCheckedItemCount() == mFileListAdapter.getCount()){
                 mEnableSelectAll = false;
             } else{
                 if(!checked) {
@@ -568,15 +587,25 @@ public class OCFileListFragment extends ExtendedListFragment implements
          * Updates available action in menu depending on current selection.
          */
         @Override
-        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
-            List<OCFile> checkedFiles = mFileListAdapter.getCheckedItems(getListView());
-            final int checkedCount = checkedFiles.size();
+        public boolean onPrepareActionMode(final ActionMode mode, final Menu menu) {
+            final int checkedCount = getListView().getCheckedItemCount();
             String title = getResources().getQuantityString(
                 R.plurals.items_selected_count,
                 checkedCount,
                 checkedCount
             );
             mode.setTitle(title);
+            // no actions until the checked files are loaded, if they are not in memory
+            filterActionMode(menu, new ArrayList<>());
+            mFileListAdapter.getCheckedItems(getListView(), checkedFiles -> {
+                if (mActiveActionMode == mode && isAdded()) {
+                    filterActionMode(menu, checkedFiles);
+                }
+            });
+            return true;
+        }
+
+        private void filterActionMode(Menu menu, List<OCFile> checkedFiles) {
             FileMenuFilter mf = new FileMenuFilter(
                 checkedFiles,
                 ((FileActivity) getActivity()).getAccount(),
@@ -584,7 +613,6 @@ public class OCFileListFragment extends ExtendedListFragment implements
                 getActivity()
             );
             mf.filter(menu, mEnableSelectAll, true);
-            return true;
         }
 
         /**
@@ -855,8 +883,58 @@ public class OCFileListFragment extends ExtendedListFragment implements
      * @param menuId        Identifier of the action menu selected by the user
      * @return              'true' if the menu selection started any action, 'false' otherwise.
      */
-    public boolean onFileActionChosen(int menuId) {
-        final ArrayList<OCFile> checkedFiles = mFileListAdapter.getCheckedItems(getListView());
+    public boolean onFileActionChosen(final int menuId) {
+        if (getListView().getCheckedItemCount() <= 0) return false;
+
+        switch (menuId) {
+            case R.id.file_action_select_all: {
+                selectAll();
+                return true;
+            }
+            case R.id.action_select_inverse: {
+                for(int i = 0;i < mFileListAdapter.getCount();i++){
+                    if(getListView().isItemChecked(i)) {
+                        getListView().setItemChecked(i, false);
+                    } else{
+                        getListView().setItemChecked(i,true);
+                    }
+                }
+                return true;
+            }
+            case R.id.action_share_file:
+            case R.id.action_open_file_with:
+            case R.id.action_rename_file:
+            case R.id.action_see_details:
+            case R.id.action_send_file:
+            case R.id.action_remove_file:
+            case R.id.action_download_file:
+            case R.id.action_sync_file:
+            case R.id.action_cancel_sync:
+            case R.id.action_set_available_offline:
+            case R.id.action_unset_available_offline:
+            case R.id.action_move:
+            case R.id.action_copy: {
+                // checked files may need to be loaded from the database first
+                mFileListAdapter.getCheckedItems(getListView(), checkedFiles -> {
+                    if (isAdded()) {
+                        onFileActionChosen(menuId, checkedFiles);
+                    }
+                });
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Start the appropriate action(s) on the given selected files.
+     *
+     * @param menuId        Identifier of the action menu selected by the user
+     * @param checkedFiles  Files selected by the user
+     * @return              'true' if the menu selection started any action, 'false' otherwise.
+     */
+    private boolean onFileActionChosen(int menuId, final ArrayList<OCFile> checkedFiles) {
         if (checkedFiles.size() <= 0) return false;
 
         if (checkedFiles.size() == 1) {
@@ -900,20 +978,6 @@ public class OCFileListFragment extends ExtendedListFragment implements
 
         /// actions possible on a batch of files
         switch (menuId) {
-            case R.id.file_action_select_all: {
-                selectAll();
-                return true;
-            }
-            case R.id.action_select_inverse: {
-                for(int i = 0;i < mFileListAdapter.getCount();i++){
-                    if(getListView().isItemChecked(i)) {
-                        getListView().setItemChecked(i, false);
-                    } else{
-                        getListView().setItemChecked(i,true);
-                    }
-                }
-                return true;
-            }
             case R.id.action_remove_file: {
                 RemoveFilesDialogFragment dialog = RemoveFilesDialogFragment.newInstance(checkedFiles);
                 dialog.show(getFragmentManager(), ConfirmationDialogFragment.FTAG_CONFIRMATION);
@@ -1004,32 +1068,58 @@ public class OCFileListFragment extends ExtendedListFragment implements
                 directory = storageManager.getFileById(directory.getParentId());
             }
 
-            // TODO Enable when "On Device" is recovered ?
-            mFileListAdapter.swapDirectory(directory, storageManager/*, onlyOnDevice*/);
             if (mFile == null || !mFile.equals(directory)) {
-                mCurrentListView.setSelection(0);
+                mResetSelectionOnNextListing = true;
             }
             mFile = directory;
 
-            updateLayout();
+            // load in background; a burst of requests is coalesced in a single listing, the last one
+            final OCFile directoryToList = directory;
+            final int listingRequest = mLastListingRequest.incrementAndGet();
+            sListingExecutor.execute(() -> {
+                if (listingRequest != mLastListingRequest.get()) {
+                    return;
+                }
+                // TODO Enable when "On Device" is recovered ?
+                final FileListListAdapter.DirectoryListing listing =
+                        mFileListAdapter.loadDirectory(directoryToList, storageManager/*, onlyOnDevice*/);
+                mMainHandler.post(() -> showListing(listingRequest, listing));
+            });
+        }
+    }
+
+    /**
+     * Shows in the view the content of a folder loaded in background by {@link #listDirectory(OCFile)}.
+     *
+     * @param listingRequest    Number of the listing request that loaded the content.
+     * @param listing           Content of the folder.
+     */
+    private void showListing(int listingRequest, FileListListAdapter.DirectoryListing listing) {
+        if (listingRequest != mLastListingRequest.get() || !isAdded()) {
+            return; // outdated, or fragment not in use anymore
         }
+        boolean hadStableIds = mFileListAdapter.hasStableIds();
+        mFileListAdapter.swapDirectory(listing);
+        if (mFileListAdapter.hasStableIds() != hadStableIds) {
+            // list views only check if ids are stable when the adapter is set
+            if (mActiveActionMode != null) {
+                mActiveActionMode.finish();
+            }
+            setListAdapter(mFileListAdapter);
+        }
+        if (mResetSelectionOnNextListing) {
+            mCurrentListView.setSelection(0);
+            mResetSelectionOnNextListing = false;
+        }
+
+        updateLayout();
     }
 
     private void updateLayout() {
         if (!isShowingJustFolders()) {
-            int filesCount = 0, foldersCount = 0;
-            int count = mFileListAdapter.getCount();
-            OCFile file;
-            for (int i=0; i < count ; i++) {
-                file = (OCFile) mFileListAdapter.getItem(i);
-                if (file.isFolder()) {
-                    foldersCount++;
-                } else {
-                    if (!file.isHidden()) {
-                        filesCount++;
-                    }
-                }
-            }
+            Pair<Integer, Integer> foldersAndFilesCount = mFileListAdapter.getFoldersAndFilesCount();
+            int foldersCount = foldersAndFilesCount.first;
+            int filesCount = foldersAndFilesCount.second;
 
             // decide grid vs list view
             OwnCloudVersion version = AccountUtils.getServerVersion(
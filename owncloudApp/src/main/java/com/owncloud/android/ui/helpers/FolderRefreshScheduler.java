@@ -0,0 +1,125 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.ui.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Debounces the refreshes of the list of files requested by events, such as the broadcasts of
+ * synchronizations, uploads and downloads.
+ *
+ * Events received within a short window are merged per folder; when the window ends, the list is refreshed
+ * once if any of the events affected the folder visible at that moment, and not at all otherwise.
+ *
+ * Must be used from the main thread.
+ */
+public class FolderRefreshScheduler {
+
+    private static final String TAG = FolderRefreshScheduler.class.getSimpleName();
+
+    private static final long DEBOUNCE_WINDOW_MS = 300;
+
+    /**
+     * Gives access to the list of files to refresh.
+     */
+    public interface RefreshTarget {
+
+        /**
+         * @return  Remote path of the folder currently visible in the list, or null if none.
+         */
+        String getVisibleFolderPath();
+
+        /**
+         * Reloads the content of the visible folder in the list.
+         */
+        void refreshVisibleFolder();
+    }
+
+    private final RefreshTarget mTarget;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Set<String> mPendingFolderPaths = new HashSet<>();
+
+    private int mEventsCount = 0;
+    private int mRefreshesCount = 0;
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String visibleFolderPath = mTarget.getVisibleFolderPath();
+            if (visibleFolderPath != null && mPendingFolderPaths.contains(visibleFolderPath)) {
+                mRefreshesCount++;
+                mTarget.refreshVisibleFolder();
+            }
+            mPendingFolderPaths.clear();
+            Log_OC.d(TAG, "Events received: " + mEventsCount + ", refreshes done: " + mRefreshesCount);
+        }
+    };
+
+    public FolderRefreshScheduler(RefreshTarget target) {
+        mTarget = target;
+    }
+
+    /**
+     * Requests a refresh of the list due to a change in a folder. The refresh is delayed until the end of
+     * the current window, merged with the rest of requests received in it.
+     *
+     * @param folderPath    Remote path of the folder which content changed.
+     */
+    public void requestRefresh(String folderPath) {
+        mEventsCount++;
+        if (folderPath == null) {
+            return;
+        }
+        if (mPendingFolderPaths.isEmpty()) {
+            // window starts with the first event; not extended by later ones, so a continuous stream of
+            // events still refreshes the list once per window
+            mHandler.postDelayed(mRefreshRunnable, DEBOUNCE_WINDOW_MS);
+        }
+        mPendingFolderPaths.add(folderPath);
+    }
+
+    /**
+     * Discards the pending refreshes, if any.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mRefreshRunnable);
+        mPendingFolderPaths.clear();
+    }
+
+    /**
+     * @return  Number of refreshes requested since the scheduler was created.
+     */
+    public int getEventsCount() {
+        return mEventsCount;
+    }
+
+    /**
+     * @return  Number of refreshes done since the scheduler was created.
+     */
+    public int getRefreshesCount() {
+        return mRefreshesCount;
+    }
+}
@@ -144,6 +144,31 @@ public class FileStorageUtils {
         return parentPath;
     }
 
+    /**
+     * Gets the lower bound, excluded, of the remote paths of all the descendants of a folder.
+     *
+     * @param folderPath    Remote path of the folder.
+     * @return              Folder path, always ending with the path separator.
+     */
+    public static String getDescendantsPathLowerBound(String folderPath) {
+        return folderPath.endsWith(OCFile.PATH_SEPARATOR) ? folderPath : folderPath + OCFile.PATH_SEPARATOR;
+    }
+
+    /**
+     * Gets the upper bound, excluded, of the remote paths of all the descendants of a folder; that is,
+     * the folder path with the trailing separator replaced by the next character.
+     *
+     * Together with {@link #getDescendantsPathLowerBound(String)} defines a half-open range of paths
+     * that can be searched with an index, and that does not depend on wildcards, as LIKE does.
+     *
+     * @param folderPath    Remote path of the folder.
+     * @return              First path after all the descendants of the folder.
+     */
+    public static String getDescendantsPathUpperBound(String folderPath) {
+        String lowerBound = getDescendantsPathLowerBound(folderPath);
+        return lowerBound.substring(0, lowerBound.length() - 1) + (char) (OCFile.PATH_SEPARATOR.charAt(0) + 1);
+    }
+
     /**
      * Creates and populates a new {@link OCFile} object with the data read from the server.
      *
@@ -0,0 +1,166 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.operations;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.RemoteFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Replaces the server with a stand-in that keeps the contents of some folders and counts the requests
+ * received, to compare the requests sent by the batch reader with the request per file sent by
+ * {@link SynchronizeFileOperation}.
+ */
+public class RemoteFileBatchReaderUnitTest {
+
+    private static final int FOLDERS = 5;
+    private static final int FILES_PER_FOLDER = 20;
+
+    private final Map<String, ArrayList<RemoteFile>> mServerFolders = new HashMap<>();
+    private int mRequestsCount = 0;
+
+    private RemoteFileBatchReader mBatchReader;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < FOLDERS; i++) {
+            String folderPath = "/folder" + i + "/";
+            ArrayList<RemoteFile> folderAndFiles = new ArrayList<>();
+            folderAndFiles.add(mockRemoteFile(folderPath, "DIR"));
+            for (int j = 0; j < FILES_PER_FOLDER; j++) {
+                folderAndFiles.add(mockRemoteFile(folderPath + "file" + j + ".txt", "text/plain"));
+            }
+            mServerFolders.put(folderPath, folderAndFiles);
+        }
+        mBatchReader = new RemoteFileBatchReader(this::readFolder);
+    }
+
+    private static RemoteFile mockRemoteFile(String remotePath, String mimeType) {
+        RemoteFile remoteFile = mock(RemoteFile.class);
+        when(remoteFile.getRemotePath()).thenReturn(remotePath);
+        when(remoteFile.getMimeType()).thenReturn(mimeType);
+        when(remoteFile.getEtag()).thenReturn("etag-" + remotePath);
+        return remoteFile;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RemoteOperationResult<ArrayList<RemoteFile>> readFolder(String remotePath) {
+        mRequestsCount++;
+        RemoteOperationResult<ArrayList<RemoteFile>> result = mock(RemoteOperationResult.class);
+        ArrayList<RemoteFile> folderAndFiles = mServerFolders.get(remotePath);
+        when(result.isSuccess()).thenReturn(folderAndFiles != null);
+        when(result.getData()).thenReturn(folderAndFiles);
+        return result;
+    }
+
+    private List<OCFile> getAllFiles() {
+        List<OCFile> files = new ArrayList<>();
+        for (int i = 0; i < FOLDERS; i++) {
+            for (int j = 0; j < FILES_PER_FOLDER; j++) {
+                files.add(new OCFile("/folder" + i + "/file" + j + ".txt"));
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void filesAreReadWithOneRequestPerFolder() {
+        List<OCFile> files = getAllFiles();
+
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(files);
+
+        assertThat(serverFiles.size(), is(files.size()));
+        // reading every file would need one request per file
+        assertThat(mRequestsCount, is(FOLDERS));
+        assertThat(mBatchReader.getRequestsCount(), is(FOLDERS));
+    }
+
+    @Test
+    public void serverFilesKeepPropertiesFromServer() {
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(getAllFiles());
+
+        OCFile serverFile = serverFiles.get("/folder1/file3.txt");
+        assertThat(serverFile.getRemotePath(), is("/folder1/file3.txt"));
+        assertThat(serverFile.getEtag(), is("etag-/folder1/file3.txt"));
+        assertThat(serverFile.getLastSyncDateForProperties() > 0, is(true));
+    }
+
+    @Test
+    public void onlyRequestedFilesAreReturned() {
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(Arrays.asList(
+                new OCFile("/folder0/file0.txt"),
+                new OCFile("/folder0/file1.txt")
+        ));
+
+        assertThat(serverFiles.size(), is(2));
+        assertThat(serverFiles.containsKey("/folder0/file2.txt"), is(false));
+    }
+
+    @Test
+    public void fileAloneInFolderIsNotRead() {
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(Arrays.asList(
+                new OCFile("/folder0/file0.txt"),
+                new OCFile("/folder1/file0.txt"),
+                new OCFile("/folder1/file1.txt")
+        ));
+
+        assertThat(serverFiles.containsKey("/folder0/file0.txt"), is(false));
+        assertThat(serverFiles.size(), is(2));
+        assertThat(mRequestsCount, is(1));
+    }
+
+    @Test
+    public void filesInFoldersNotReadAreNotReturned() {
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(Arrays.asList(
+                new OCFile("/removed/file0.txt"),
+                new OCFile("/removed/file1.txt")
+        ));
+
+        assertThat(serverFiles.isEmpty(), is(true));
+        assertThat(mRequestsCount, is(1));
+    }
+
+    @Test
+    public void filesRemovedInServerAreNotReturned() {
+        Map<String, OCFile> serverFiles = mBatchReader.readFiles(Arrays.asList(
+                new OCFile("/folder0/file0.txt"),
+                new OCFile("/folder0/removed.txt")
+        ));
+
+        assertThat(serverFiles.size(), is(1));
+        assertThat(serverFiles.containsKey("/folder0/removed.txt"), is(false));
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.operations;
+
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.RemoteFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Replaces the server with a reader of folders that counts the requests received and blocks them
+ * until released, to check what the prefetcher sends and when.
+ */
+public class RemoteFolderPrefetcherUnitTest {
+
+    private static final int PREFETCH_DEPTH = 2;
+
+    private final Map<String, RemoteOperationResult<ArrayList<RemoteFile>>> mResults =
+            new ConcurrentHashMap<>();
+    private final List<String> mRequests = new ArrayList<>();
+    private CountDownLatch mRequestsStarted;
+    private CountDownLatch mServerReleased;
+
+    private RemoteFolderPrefetcher mPrefetcher;
+
+    @Before
+    public void setUp() {
+        mRequestsStarted = new CountDownLatch(PREFETCH_DEPTH);
+        mServerReleased = new CountDownLatch(1);
+        mPrefetcher = new RemoteFolderPrefetcher(this::readFolder, PREFETCH_DEPTH);
+    }
+
+    @After
+    public void tearDown() {
+        mServerReleased.countDown();
+        mPrefetcher.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RemoteOperationResult<ArrayList<RemoteFile>> readFolder(String remotePath) {
+        synchronized (mRequests) {
+            mRequests.add(remotePath);
+        }
+        RemoteOperationResult<ArrayList<RemoteFile>> result = mock(RemoteOperationResult.class);
+        mResults.put(remotePath, result);
+        mRequestsStarted.countDown();
+        try {
+            mServerReleased.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    @Test
+    public void prefetchesAreSentInParallel() throws InterruptedException {
+        mPrefetcher.prefetch("/a/");
+        mPrefetcher.prefetch("/b/");
+
+        // both requests are in progress at the same time in the stand-in server
+        assertThat(mRequestsStarted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void takeReturnsPrefetchedResult() {
+        mPrefetcher.prefetch("/a/");
+        mServerReleased.countDown();
+
+        RemoteOperationResult<ArrayList<RemoteFile>> result = mPrefetcher.take("/a/");
+
+        assertThat(result, sameInstance(mResults.get("/a/")));
+        assertThat(mPrefetcher.getHitsCount(), is(1));
+    }
+
+    @Test
+    public void takeOfFolderNotPrefetchedReturnsNull() {
+        assertThat(mPrefetcher.take("/a/"), is(nullValue()));
+        assertThat(mRequests.size(), is(0));
+    }
+
+    @Test
+    public void resultIsTakenOnlyOnce() {
+        mPrefetcher.prefetch("/a/");
+        mServerReleased.countDown();
+
+        mPrefetcher.take("/a/");
+
+        assertThat(mPrefetcher.take("/a/"), is(nullValue()));
+    }
+
+    @Test
+    public void sameFolderIsPrefetchedOnce() {
+        mPrefetcher.prefetch("/a/");
+        mPrefetcher.prefetch("/a/");
+
+        assertThat(mPrefetcher.getPrefetchesCount(), is(1));
+    }
+
+    @Test
+    public void prefetchesAreBoundedByDepth() {
+        mPrefetcher.prefetch("/a/");
+        mPrefetcher.prefetch("/b/");
+        mPrefetcher.prefetch("/c/");
+
+        assertThat(mPrefetcher.getPrefetchesCount(), is(PREFETCH_DEPTH));
+        assertThat(mPrefetcher.take("/c/"), is(nullValue()));
+    }
+
+    @Test
+    public void takingFreesRoomForNewPrefetches() {
+        mPrefetcher.prefetch("/a/");
+        mPrefetcher.prefetch("/b/");
+        mServerReleased.countDown();
+
+        mPrefetcher.take("/a/");
+        mPrefetcher.prefetch("/c/");
+
+        assertThat(mPrefetcher.getPrefetchesCount(), is(3));
+    }
+
+    @Test
+    public void noPrefetchesAfterShutdown() {
+        mPrefetcher.shutdown();
+
+        mPrefetcher.prefetch("/a/");
+
+        assertThat(mPrefetcher.getPrefetchesCount(), is(0));
+    }
+}
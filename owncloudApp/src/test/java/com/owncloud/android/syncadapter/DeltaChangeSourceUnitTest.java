@@ -0,0 +1,181 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Replaces the server with an in-memory feed of changes that keeps a log of changed paths; cursors are
+ * positions in the log.
+ */
+public class DeltaChangeSourceUnitTest {
+
+    private static class StandInChangeFeed implements ChangeFeed {
+
+        private final List<String> mLog = new ArrayList<>();
+        private int mRequestsCount = 0;
+        private boolean mExpired = false;
+
+        void change(String... paths) {
+            mLog.addAll(Arrays.asList(paths));
+        }
+
+        @Override
+        public String getCurrentCursor() {
+            mRequestsCount++;
+            return String.valueOf(mLog.size());
+        }
+
+        @Override
+        public Changes getChangesSince(String cursor) {
+            mRequestsCount++;
+            if (mExpired) {
+                return null;
+            }
+            return new Changes(
+                    new ArrayList<>(mLog.subList(Integer.parseInt(cursor), mLog.size())),
+                    String.valueOf(mLog.size())
+            );
+        }
+    }
+
+    private static class InMemoryCursorStore implements DeltaChangeSource.CursorStore {
+
+        private String mCursor;
+
+        @Override
+        public String load() {
+            return mCursor;
+        }
+
+        @Override
+        public void save(String cursor) {
+            mCursor = cursor;
+        }
+    }
+
+    private StandInChangeFeed mFeed;
+    private InMemoryCursorStore mCursorStore;
+
+    @Before
+    public void setUp() {
+        mFeed = new StandInChangeFeed();
+        mCursorStore = new InMemoryCursorStore();
+    }
+
+    private List<String> synchronize(boolean completed) {
+        DeltaChangeSource source = new DeltaChangeSource(mFeed, mCursorStore);
+        List<String> changedFolders = source.getChangedFolders();
+        source.onSynchronizationFinished(completed);
+        return changedFolders;
+    }
+
+    @Test
+    public void firstSynchronizationWalksAllTheTree() {
+        mFeed.change("/a/file.txt");
+
+        assertThat(synchronize(true), is(Collections.singletonList("/")));
+        assertThat(mCursorStore.load(), is("1"));
+    }
+
+    @Test
+    public void nextSynchronizationsOnlyVisitChangedFolders() {
+        synchronize(true);
+        mFeed.change("/a/file.txt", "/b/c/file.txt");
+
+        assertThat(synchronize(true), is(Arrays.asList("/a/", "/b/c/")));
+        assertThat(mCursorStore.load(), is("2"));
+    }
+
+    @Test
+    public void noChangesCostOneRequest() {
+        synchronize(true);
+        int requestsBefore = mFeed.mRequestsCount;
+
+        assertThat(synchronize(true).isEmpty(), is(true));
+        assertThat(mFeed.mRequestsCount - requestsBefore, is(1));
+    }
+
+    @Test
+    public void cursorIsNotStoredIfSynchronizationIsNotCompleted() {
+        synchronize(true);
+        mFeed.change("/a/file.txt");
+
+        synchronize(false);
+
+        assertThat(mCursorStore.load(), is("0"));
+        assertThat(synchronize(true), is(Collections.singletonList("/a/")));
+    }
+
+    @Test
+    public void expiredCursorWalksAllTheTree() {
+        synchronize(true);
+        mFeed.change("/a/file.txt");
+        mFeed.mExpired = true;
+
+        assertThat(synchronize(true), is(Collections.singletonList("/")));
+        assertThat(mCursorStore.load(), is("1"));
+    }
+
+    @Test
+    public void nothingIsStoredWhenFirstSynchronizationFails() {
+        synchronize(false);
+
+        assertThat(mCursorStore.load(), is(nullValue()));
+    }
+
+    @Test
+    public void changedFolderIsSynchronizedFromItsParent() {
+        assertThat(
+                DeltaChangeSource.getFoldersToSynchronize(Collections.singletonList("/a/b/")),
+                is(Collections.singletonList("/a/"))
+        );
+    }
+
+    @Test
+    public void changeInRootFolder() {
+        assertThat(
+                DeltaChangeSource.getFoldersToSynchronize(Arrays.asList("/file.txt", "/a/")),
+                is(Collections.singletonList("/"))
+        );
+    }
+
+    @Test
+    public void foldersWithSynchronizedAncestorsAreNotRepeated() {
+        assertThat(
+                DeltaChangeSource.getFoldersToSynchronize(
+                        Arrays.asList("/a/b/c/file.txt", "/a/file.txt", "/a b/file.txt", "/ab/file.txt")
+                ),
+                is(Arrays.asList("/a b/", "/a/", "/ab/"))
+        );
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import androidx.core.util.Pair;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Checks when the subtrees of folders are reported as completely synchronized, including a full
+ * synchronization of a tree of more than 10,000 folders.
+ */
+public class SubtreeSyncTrackerUnitTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+    private static final String ETAG = "etag";
+
+    private static List<String> paths(List<Pair<String, String>> folders) {
+        List<String> paths = new ArrayList<>();
+        for (Pair<String, String> folder : folders) {
+            paths.add(folder.first);
+        }
+        return paths;
+    }
+
+    @Test
+    public void folderWithoutChangedSubfoldersCompletesNoAncestors() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+
+        assertThat(tracker.onFolderSynchronized("/", ETAG, NONE).isEmpty(), is(true));
+    }
+
+    @Test
+    public void parentIsCompletedAfterAllChangedSubfolders() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        tracker.onFolderSynchronized("/", ETAG, Arrays.asList("/a/", "/b/"));
+
+        assertThat(tracker.onFolderSynchronized("/a/", ETAG, NONE).isEmpty(), is(true));
+        assertThat(paths(tracker.onFolderSynchronized("/b/", ETAG, NONE)), is(Collections.singletonList("/")));
+    }
+
+    @Test
+    public void completionIsPropagatedUpFromBottomToTop() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        tracker.onFolderSynchronized("/", ETAG, Collections.singletonList("/a/"));
+        tracker.onFolderSynchronized("/a/", ETAG, Collections.singletonList("/a/b/"));
+
+        assertThat(paths(tracker.onFolderSynchronized("/a/b/", ETAG, NONE)), is(Arrays.asList("/a/", "/")));
+    }
+
+    @Test
+    public void completedAncestorsKeepTheirEtagsWhenMerged() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        tracker.onFolderSynchronized("/", "etag-root", Collections.singletonList("/a/"));
+        tracker.onFolderSynchronized("/a/", "etag-a", Collections.singletonList("/a/b/"));
+
+        List<Pair<String, String>> completed = tracker.onFolderSynchronized("/a/b/", "etag-b", NONE);
+
+        assertThat(completed.get(0).second, is("etag-a"));
+        assertThat(completed.get(1).second, is("etag-root"));
+    }
+
+    @Test
+    public void failedSubfolderPreventsCompletingAncestors() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        tracker.onFolderSynchronized("/", ETAG, Arrays.asList("/a/", "/b/"));
+
+        // "/a/" fails, so it's never reported
+        assertThat(tracker.onFolderSynchronized("/b/", ETAG, NONE).isEmpty(), is(true));
+    }
+
+    @Test
+    public void removedSubfolderDoesNotPreventCompletingAncestors() {
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        tracker.onFolderSynchronized("/", ETAG, Arrays.asList("/a/", "/b/"));
+        tracker.onFolderSynchronized("/a/", ETAG, NONE);
+
+        assertThat(paths(tracker.onFolderRemoved("/b/")), is(Collections.singletonList("/")));
+    }
+
+    @Test
+    public void fullSyncOfHugeTreeCompletesEveryFetchedFolderOnce() {
+        // 1 + 10 + 100 + 1,000 + 10,000 folders, all of them changed in the server
+        final int fanOut = 10;
+        final int depth = 4;
+        SubtreeSyncTracker tracker = new SubtreeSyncTracker();
+        Set<String> completed = new HashSet<>();
+        int foldersWithSubfolders = 0;
+        int folders = 0;
+
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push("/");
+        while (!pending.isEmpty()) {
+            String folder = pending.pop();
+            folders++;
+            List<String> subfolders = new ArrayList<>();
+            if (folder.split("/").length <= depth) {
+                for (int i = 0; i < fanOut; i++) {
+                    subfolders.add(folder + i + "/");
+                }
+                foldersWithSubfolders++;
+            }
+            for (String ancestor : paths(tracker.onFolderSynchronized(folder, ETAG, subfolders))) {
+                assertThat(completed.add(ancestor), is(true));
+            }
+            for (String subfolder : subfolders) {
+                pending.push(subfolder);
+            }
+        }
+
+        assertThat(folders, is(11111));
+        assertThat(completed.size(), is(foldersWithSubfolders));
+        assertThat(completed, hasItem("/"));
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.syncadapter;
+
+import androidx.core.util.Pair;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Walks a tree of more than 10,000 folders as a full account synchronization does, starting from the root
+ * folder, with a stand-in for the server that keeps the ETag of every folder and a stand-in for the local
+ * database that keeps the tree ETag and the available offline status of every folder.
+ */
+public class UnchangedSubtreeFilterUnitTest {
+
+    private static final int FAN_OUT = 10;
+    private static final int DEPTH = 4;
+
+    /** Subfolders of every folder */
+    private final Map<String, List<String>> mSubfolders = new HashMap<>();
+
+    /** ETags of folders in the server */
+    private final Map<String, String> mServerEtags = new HashMap<>();
+
+    /** Tree ETags of folders in the local database */
+    private final Map<String, String> mTreeEtags = new HashMap<>();
+
+    /** Folders set as available offline in the local database */
+    private final Set<String> mAvailableOffline = new HashSet<>();
+
+    private int mFetchesCount;
+    private Set<String> mVisited;
+
+    @Before
+    public void setUp() {
+        // 1 + 10 + 100 + 1,000 + 10,000 folders, all of them synchronized
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(OCFile.ROOT_PATH);
+        while (!pending.isEmpty()) {
+            String folder = pending.pop();
+            mServerEtags.put(folder, "etag-" + folder);
+            mTreeEtags.put(folder, "etag-" + folder);
+            List<String> subfolders = new ArrayList<>();
+            if (folder.split("/").length <= DEPTH) {
+                for (int i = 0; i < FAN_OUT; i++) {
+                    subfolders.add(folder + i + "/");
+                }
+            }
+            mSubfolders.put(folder, subfolders);
+            for (String subfolder : subfolders) {
+                pending.push(subfolder);
+            }
+        }
+    }
+
+    private OCFile getLocalFolder(String remotePath) {
+        OCFile folder = new OCFile(remotePath);
+        folder.setMimetype("DIR");
+        if (mAvailableOffline.contains(remotePath)) {
+            folder.setAvailableOfflineStatus(OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE);
+        } else {
+            for (String availableOffline : mAvailableOffline) {
+                if (remotePath.startsWith(availableOffline)) {
+                    folder.setAvailableOfflineStatus(OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT);
+                }
+            }
+        }
+        return folder;
+    }
+
+    private boolean hasAvailableOfflineDescendants(OCFile folder) {
+        for (String availableOffline : mAvailableOffline) {
+            if (availableOffline.startsWith(folder.getRemotePath()) &&
+                    !availableOffline.equals(folder.getRemotePath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the tree from the root folder, fetching the folders changed in the server and only pushing
+     * local changes in the rest, as {@link FileSyncAdapter} does. Folders only pushed list their children
+     * from the local database, as not changed in the server.
+     */
+    private void synchronize() {
+        UnchangedSubtreeFilter filter = new UnchangedSubtreeFilter(this::hasAvailableOfflineDescendants);
+        mFetchesCount = 0;
+        mVisited = new HashSet<>();
+        Deque<Pair<OCFile, Boolean>> pending = new ArrayDeque<>();
+        pending.push(new Pair<>(getLocalFolder(OCFile.ROOT_PATH), true));
+        while (!pending.isEmpty()) {
+            Pair<OCFile, Boolean> folder = pending.pop();
+            String remotePath = folder.first.getRemotePath();
+            mVisited.add(remotePath);
+            boolean fetched = folder.second;
+            if (fetched) {
+                mFetchesCount++;
+            }
+            List<Pair<OCFile, Boolean>> children = new ArrayList<>();
+            for (String subfolder : mSubfolders.get(remotePath)) {
+                boolean changed = fetched && !mServerEtags.get(subfolder).equals(mTreeEtags.get(subfolder));
+                children.add(new Pair<>(getLocalFolder(subfolder), changed));
+            }
+            List<Pair<OCFile, Boolean>> foldersToVisit = filter.getFoldersToVisit(children);
+            for (int i = foldersToVisit.size() - 1; i >= 0; i--) {
+                pending.push(foldersToVisit.get(i));
+            }
+            if (fetched) {
+                // subtree synchronized
+                mTreeEtags.put(remotePath, mServerEtags.get(remotePath));
+            }
+        }
+    }
+
+    private Set<String> getSubtree(String remotePath) {
+        Set<String> subtree = new HashSet<>();
+        for (String folder : mSubfolders.keySet()) {
+            if (folder.startsWith(remotePath)) {
+                subtree.add(folder);
+            }
+        }
+        return subtree;
+    }
+
+    @Test
+    public void unchangedTreeOnlyFetchesTheRoot() {
+        synchronize();
+
+        assertThat(mSubfolders.size(), is(11111));
+        assertThat(mFetchesCount, is(1));
+        assertThat(mVisited.size(), is(1));
+    }
+
+    @Test
+    public void availableOfflineSubtreesAreStillVisited() {
+        String availableOfflineFolder = "/3/3/3/";
+        mAvailableOffline.add(availableOfflineFolder);
+
+        synchronize();
+
+        Set<String> expected = getSubtree(availableOfflineFolder);
+        expected.add("/");
+        expected.add("/3/");
+        expected.add("/3/3/");
+        assertThat(mVisited, is(expected));
+        // unchanged folders are visited to push local changes, but not fetched
+        assertThat(mFetchesCount, is(1));
+    }
+
+    @Test
+    public void changedFolderIsFetchedThroughItsAncestors() {
+        // a change in the server changes the ETags of the folder and all its ancestors
+        for (String folder : new String[]{"/", "/7/", "/7/1/", "/7/1/4/"}) {
+            mServerEtags.put(folder, "new-etag-" + folder);
+        }
+
+        synchronize();
+
+        assertThat(mFetchesCount, is(4));
+        assertThat(mVisited.size(), is(4));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *   ownCloud Android client application
+ *
+ *   Copyright (C) 2019 ownCloud GmbH.
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License version 2,
+ *   as published by the Free Software Foundation.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.owncloud.android.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Local unit test, to be run out of Android emulator or device.
+ *
+ * Checks the range of paths used to select the descendants of a folder in the database; the range is
+ * evaluated here with the same binary comparison SQLite uses for ASCII paths.
+ */
+public class FileStorageUtilsUnitTest {
+
+    private static boolean isInDescendantsRange(String folderPath, String path) {
+        return path.compareTo(FileStorageUtils.getDescendantsPathLowerBound(folderPath)) > 0 &&
+                path.compareTo(FileStorageUtils.getDescendantsPathUpperBound(folderPath)) < 0;
+    }
+
+    @Test
+    public void boundsOfFolderPath() {
+        assertThat(FileStorageUtils.getDescendantsPathLowerBound("/Photos/"), is("/Photos/"));
+        assertThat(FileStorageUtils.getDescendantsPathUpperBound("/Photos/"), is("/Photos0"));
+    }
+
+    @Test
+    public void boundsOfFolderPathWithoutTrailingSeparator() {
+        assertThat(FileStorageUtils.getDescendantsPathLowerBound("/Photos"), is("/Photos/"));
+        assertThat(FileStorageUtils.getDescendantsPathUpperBound("/Photos"), is("/Photos0"));
+    }
+
+    @Test
+    public void rangeContainsAllDescendants() {
+        assertThat(isInDescendantsRange("/Photos/", "/Photos/a.jpg"), is(true));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos/2019/"), is(true));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos/2019/January/b.jpg"), is(true));
+        assertThat(isInDescendantsRange("/", "/Photos/2019/January/b.jpg"), is(true));
+    }
+
+    @Test
+    public void rangeExcludesFolderAndSiblings() {
+        assertThat(isInDescendantsRange("/Photos/", "/Photos/"), is(false));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos"), is(false));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos 2/a.jpg"), is(false));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos-old/a.jpg"), is(false));
+        assertThat(isInDescendantsRange("/Photos/", "/Photos0/a.jpg"), is(false));
+        assertThat(isInDescendantsRange("/Photos/", "/PhotosA/a.jpg"), is(false));
+    }
+
+    @Test
+    public void rangeIsNotFooledByWildcards() {
+        // with LIKE, '_' matches any character and '%' any sequence
+        assertThat(isInDescendantsRange("/a_b/", "/a_b/file.txt"), is(true));
+        assertThat(isInDescendantsRange("/a_b/", "/axb/file.txt"), is(false));
+        assertThat(isInDescendantsRange("/100%/", "/100%/file.txt"), is(true));
+        assertThat(isInDescendantsRange("/100%/", "/100 percent/file.txt"), is(false));
+        assertThat(isInDescendantsRange("/100%/", "/100%x/file.txt"), is(false));
+    }
+}